@@ -0,0 +1,44 @@
+package sociald1.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point d'entrée de la suite de benchmarks JMH de sociald1.
+ *
+ * Lance tous les benchmarks du paquetage sociald1.bench, ou ceux dont le nom
+ * correspond à l'expression régulière passée en argument, avec le profileur du
+ * ramasse-miettes pour le taux d'allocation. Chaque benchmark mesure le débit
+ * et le temps moyen par opération, dans sa propre JVM de taille suffisante pour
+ * le graphe de 10^6 User (voir SocialGraph).
+ *
+ * <pre>{@code
+ * java -cp <classpath> sociald1.bench.Benchmarks NewsFeedBenchmark
+ * }</pre>
+ *
+ * Pour choisir les tailles de graphe ou le nombre d'itérations, lancer
+ * org.openjdk.jmh.Main avec les options usuelles de JMH:
+ *
+ * <pre>{@code
+ * java -cp <classpath> org.openjdk.jmh.Main sociald1.bench -p userNb=100,10000 -prof gc
+ * }</pre>
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class Benchmarks {
+	private Benchmarks() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : Benchmarks.class.getPackageName() + ".";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,109 @@
+package sociald1;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Horloge à gros grain: une TimeSource dont l'heure est mise à jour par un
+ * thread dédié à intervalles réguliers et lue sans appel à l'horloge du
+ * système.
+ *
+ * La lecture de l'heure (epochNanos()) est une simple lecture de champ: elle
+ * ne coûte ni appel système ni allocation, quel que soit le nombre de Post
+ * créés. En contrepartie, l'heure renvoyée peut retarder d'au plus la
+ * résolution de l'horloge; les Post créés pendant un même intervalle reçoivent
+ * des horodatages consécutifs (voir Timestamps.now()).
+ *
+ * <pre>{@code
+ * try (CoarseClock clock = new CoarseClock(Duration.ofMillis(1))) {
+ *     Timestamps.setSource(clock);
+ *     ...
+ * } finally {
+ *     Timestamps.setSource(TimeSource.SYSTEM);
+ * }
+ * }</pre>
+ *
+ * @invariant getResolution() != null && !getResolution().isNegative();
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class CoarseClock implements TimeSource, Closeable {
+	/**
+	 * Résolution par défaut: une milliseconde.
+	 */
+	public static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(1);
+
+	private final Duration resolution;
+	private final Thread ticker;
+	private volatile long now;
+	private volatile boolean closed;
+
+	/**
+	 * Initialise et démarre une horloge de résolution DEFAULT_RESOLUTION.
+	 */
+	public CoarseClock() {
+		this(DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Initialise et démarre une horloge mise à jour tous les intervalles de durée
+	 * spécifiée.
+	 *
+	 * @param resolution l'intervalle entre deux mises à jour
+	 *
+	 * @throws IllegalArgumentException si resolution n'est pas strictement
+	 *                                  positive
+	 *
+	 * @requires resolution != null;
+	 * @ensures getResolution().equals(resolution);
+	 */
+	public CoarseClock(Duration resolution) {
+		if (resolution.isZero() || resolution.isNegative()) {
+			throw new IllegalArgumentException("Résolution non positive: " + resolution);
+		}
+		this.resolution = resolution;
+		this.now = Timestamps.of(Instant.now());
+		this.ticker = new Thread(this::tick, "coarse-clock");
+		this.ticker.setDaemon(true);
+		this.ticker.start();
+	}
+
+	public Duration getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Renvoie l'heure de la dernière mise à jour de cette horloge.
+	 *
+	 * @pure
+	 */
+	@Override
+	public long epochNanos() {
+		return now;
+	}
+
+	/**
+	 * Arrête les mises à jour de cette horloge: epochNanos() renvoie ensuite
+	 * toujours l'heure de la dernière mise à jour.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ticker.interrupt();
+	}
+
+	private void tick() {
+		long millis = resolution.toMillis();
+		int nanos = (int) (resolution.toNanos() - millis * 1_000_000);
+		while (!closed) {
+			try {
+				Thread.sleep(millis, nanos);
+			} catch (InterruptedException e) {
+				return;
+			}
+			now = Timestamps.of(Instant.now());
+		}
+	}
+}
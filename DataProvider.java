@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 
+import sociald1.GraphGenerator;
 import sociald1.NewsFeed;
 import sociald1.Post;
 import sociald1.User;
@@ -27,52 +28,31 @@ public class DataProvider {
             "Naila", "Zahra", "Rosa", "Lisa", "Sheraz",
             "Nima", "Aliou", "Issa", "Mamadou", "Ismael");
 	private static List<String> badNames = Arrays.asList("", " ", "  ", "\n \t", null);
+	/**
+	 * Graine des tirages aléatoires, fixée par la propriété système sociald1.seed:
+	 * deux exécutions de même graine testent le même réseau avec les mêmes
+	 * arguments.
+	 */
+	static final long SEED = Long.getLong("sociald1.seed", 20230918L);
+	private static final int POST_NB = 1000;
+	private static final double MEAN_SUBSCRIPTIONS = 100.0 / 28;
+	private static final double MEAN_LIKES = 1;
 	private static List<User> allUsers;
 	private static List<Post> allPosts;
-	private static Random randGen = new Random();
+	private static Random randGen = new Random(SEED);
 
 	static {
 		initUsers(goodUserNames);
 	}
 
 	private static void initUsers(List<String> userNames) {
+		GraphGenerator gen = new GraphGenerator(SEED, userNames.size(), POST_NB);
+		gen.setUserNames(userNames::get);
+		gen.setMeanSubscriptions(MEAN_SUBSCRIPTIONS);
+		gen.setMeanLikes(MEAN_LIKES);
 		allUsers = new ArrayList<User>(userNames.size());
-		for (String name : userNames) {
-			allUsers.add(new User(name, "pass" + name));
-		}
-		addPostsToUsers(allUsers);
-		addLikesToPosts(allPosts);
-		addSubscriptionsToUsers(allUsers);
-	}
-
-	private static void addPostsToUsers(List<User> userList) {
-		int nbMsg = 1000;
-		allPosts = new ArrayList<Post>(nbMsg);
-		while (nbMsg > 0) {
-			User u = getRandomElt(userList);
-			allPosts.add(u.addPost("Message n°" + nbMsg + " from " + u.getName()));
-			nbMsg--;
-		}
-	}
-
-	private static void addSubscriptionsToUsers(List<User> userList) {
-		int nbSubscription = 100;
-		while (nbSubscription > 0) {
-			User u = getRandomElt(userList);
-			User subscription = getRandomElt(userList);
-			if (u != subscription) {
-				u.addSubscription(subscription);
-				nbSubscription--;
-			}
-		}
-	}
-
-	private static void addLikesToPosts(List<Post> postList) {
-		int likeNb = 1000;
-		while (likeNb > 0) {
-			getRandomElt(postList).addLikeFrom(getRandomElt(allUsers));
-			likeNb--;
-		}
+		allPosts = new ArrayList<Post>(POST_NB);
+		gen.generate(allUsers::add, allPosts::add);
 	}
 
 	public static List<User> allUser() {
@@ -0,0 +1,147 @@
+package sociald1;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Politique de diffusion hybride des Post vers les fils d'actualité
+ * matérialisés (voir User.enableTimeline(int)).
+ *
+ * Un auteur dont le nombre d'abonnés possédant un fil matérialisé dépasse
+ * getThreshold() n'est plus diffusé à l'écriture: ses Post sont fusionnés au
+ * moment de la lecture par NewsFeed. Les autres auteurs voient chacun de leurs
+ * Post inséré dans le fil matérialisé de leurs abonnés par User.addPost(String).
+ * Le coût d'écriture d'un Post est ainsi borné par le seuil, sans renoncer à la
+ * lecture séquentielle pour la grande majorité des auteurs.
+ *
+ * Le seuil peut être modifié à tout moment. La décision propre à chaque auteur
+ * (User.isMergedOnRead()) est réévaluée lorsque cet auteur poste, lorsque son
+ * nombre d'abonnés change et, pour tous les auteurs, lorsque le seuil est
+ * modifié; les statistiques reflètent donc les décisions effectivement
+ * appliquées. La lecture d'un fil d'actualité ne réévalue aucune décision.
+ *
+ * Les auteurs postant depuis des threads différents, les compteurs sont
+ * répartis (LongAdder) ou atomiques et le seuil est lu sans verrou.
+ *
+ * @invariant getThreshold() >= 0;
+ * @invariant getPushedPostNb() >= 0;
+ * @invariant getPulledPostNb() >= 0;
+ * @invariant getMergedOnReadAuthorNb() >= 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class FanOutPolicy {
+	/**
+	 * Seuil par défaut du nombre d'abonnés au-delà duquel un auteur est fusionné à
+	 * la lecture.
+	 */
+	public static final int DEFAULT_THRESHOLD = 10000;
+
+	private static volatile int threshold = DEFAULT_THRESHOLD;
+	private static final LongAdder pushedPostNb = new LongAdder();
+	private static final LongAdder pulledPostNb = new LongAdder();
+	private static final AtomicInteger mergedOnReadAuthorNb = new AtomicInteger();
+
+	private FanOutPolicy() {
+	}
+
+	/**
+	 * Renvoie le nombre d'abonnés possédant un fil matérialisé au-delà duquel un
+	 * auteur est fusionné à la lecture.
+	 *
+	 * @return le seuil courant
+	 *
+	 * @pure
+	 */
+	public static int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Modifie le seuil au-delà duquel un auteur est fusionné à la lecture, puis
+	 * réévalue une fois la décision de chaque User enregistré, sous son verrou
+	 * (voir User.updateFanOut()).
+	 *
+	 * @param newThreshold le nouveau seuil
+	 *
+	 * @requires newThreshold >= 0;
+	 * @ensures getThreshold() == newThreshold;
+	 * @ensures (\forall int i; i >= 0 && i < UserRegistry.size();
+	 *          UserRegistry.get(i).isMergedOnRead() ==
+	 *          mergeOnRead(UserRegistry.get(i).getTimelineFollowerNb()));
+	 */
+	public static void setThreshold(int newThreshold) {
+		threshold = newThreshold;
+		for (int id = 0, n = UserRegistry.size(); id < n; id++) {
+			UserRegistry.get(id).updateFanOut();
+		}
+	}
+
+	/**
+	 * Renvoie le nombre d'insertions de Post effectuées dans les fils matérialisés
+	 * des abonnés depuis la dernière remise à zéro des statistiques.
+	 *
+	 * @return le nombre d'insertions dans les fils des abonnés
+	 *
+	 * @pure
+	 */
+	public static long getPushedPostNb() {
+		return pushedPostNb.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de Post qui n'ont pas été diffusés à l'écriture parce que
+	 * leur auteur est fusionné à la lecture, depuis la dernière remise à zéro des
+	 * statistiques.
+	 *
+	 * @return le nombre de Post laissés à la fusion à la lecture
+	 *
+	 * @pure
+	 */
+	public static long getPulledPostNb() {
+		return pulledPostNb.sum();
+	}
+
+	/**
+	 * Renvoie le nombre d'auteurs actuellement fusionnés à la lecture.
+	 *
+	 * @return le nombre d'auteurs fusionnés à la lecture
+	 *
+	 * @pure
+	 */
+	public static int getMergedOnReadAuthorNb() {
+		return mergedOnReadAuthorNb.get();
+	}
+
+	/**
+	 * Remet à zéro les compteurs de Post diffusés et non diffusés.
+	 *
+	 * @ensures getPushedPostNb() == 0;
+	 * @ensures getPulledPostNb() == 0;
+	 */
+	public static void resetStatistics() {
+		pushedPostNb.reset();
+		pulledPostNb.reset();
+	}
+
+	/**
+	 * Renvoie true si un auteur ayant le nombre spécifié d'abonnés avec un fil
+	 * matérialisé doit être fusionné à la lecture.
+	 */
+	static boolean mergeOnRead(int timelineFollowerNb) {
+		return timelineFollowerNb > threshold;
+	}
+
+	static void postPushed(int timelineNb) {
+		pushedPostNb.add(timelineNb);
+	}
+
+	static void postPulled() {
+		pulledPostNb.increment();
+	}
+
+	static void authorSwitched(boolean toMergeOnRead) {
+		mergedOnReadAuthorNb.addAndGet(toMergeOnRead ? 1 : -1);
+	}
+}
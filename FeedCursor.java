@@ -0,0 +1,458 @@
+package sociald1;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Curseur sur le fil d'actualité d'un User: les Post de ce User et de ses
+ * abonnements, fusionnés du plus récent au plus ancien.
+ *
+ * Les Post des différents auteurs sont fusionnés à l'aide de deux tas (un par
+ * sens de parcours) contenant les auteurs ordonnés selon la date de leur
+ * prochain Post dans ce sens. Chaque appel à next() ou previous() coûte donc
+ * O(log k) pour k auteurs suivis. À date égale, les Post de l'auteur apparaissant
+ * en premier dans l'itération sont considérés comme les plus récents: le User
+ * lui-même, puis ses abonnements par identifiant croissant.
+ *
+ * Si le fil d'actualité du User est matérialisé (voir User.enableTimeline(int)),
+ * ce fil est traité comme une seule source déjà fusionnée, lue séquentiellement,
+ * et seuls les auteurs fusionnés à la lecture (voir FanOutPolicy) sont placés
+ * individuellement dans les tas. Au-delà des Post contenus dans le fil
+ * matérialisé, les auteurs qu'il couvre rejoignent les tas à leur tour.
+ *
+ * Un FeedCursor parcourt un instantané du fil d'actualité, pris à sa création
+ * sans copier aucun Post: chaque auteur est parcouru au moyen d'un UserCursor
+ * limité aux Post dont il avait achevé la diffusion (voir
+ * User.getPublishedNb()), et le fil matérialisé est lu dans l'état marqué à
+ * cette date. Les Post ajoutés ensuite sont ignorés et les index ne changent
+ * pas, même si des auteurs postent pendant l'itération. Les entrées du fil
+ * matérialisé postérieures à l'instantané d'un auteur sont sautées; si la
+ * disposition du fil change (fusion ou retrait d'un auteur, éviction d'un Post
+ * non encore lu), l'itération se poursuit par la seule fusion des auteurs à
+ * partir de leurs positions courantes, qui forment toujours un préfixe du fil
+ * ordonné.
+ *
+ * Lorsqu'il sert l'itération d'un NewsFeed, un FeedCursor reporte chacun de
+ * ses déplacements sur le curseur d'itération de l'auteur concerné. Sinon
+ * (NewsFeed.cursor()), plusieurs FeedCursor peuvent parcourir les mêmes
+ * auteurs sans interférer.
+ *
+ * @invariant nextIndex() >= 0 && nextIndex() <= size();
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+final class FeedCursor implements PostCursor {
+	private final User[] authors;
+	// Identifiants croissants des auteurs d'indice 1 à authors.length - 1
+	private final int[] authorIds;
+	private final UserCursor[] cursors;
+	// Curseurs d'itération des auteurs, ou null
+	private final UserCursor[] shared;
+	private final MergeHeap nextHeap;
+	private final MergeHeap previousHeap;
+	private final int[] floor;
+	private final boolean[] covered;
+	private boolean floorReady;
+	// Fil matérialisé, ou null s'il n'existe pas ou a été abandonné
+	private Timeline timeline;
+	private int timelineLen;
+	private long pushMark;
+	private long layoutMark;
+	// Indice dans l'état marqué du prochain Post du fil, ou timelineLen
+	private int timelinePos;
+	private Post nextEntry;
+	private int nextSlot;
+	// Indice dans l'état marqué du Post précédent du fil, ou -1
+	private int previousPos;
+	private Post previousEntry;
+	private int previousSlot;
+	private final int total;
+	private int nextIdx;
+	private int lastIdx;
+	private User lastUser;
+
+	/**
+	 * Initialise un curseur placé avant le Post le plus récent du fil d'actualité
+	 * du User spécifié.
+	 *
+	 * @param user   le User dont le fil d'actualité est parcouru
+	 * @param shared true pour reporter les déplacements sur le curseur
+	 *               d'itération de chaque auteur, remis au début
+	 *
+	 * @requires user != null;
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	FeedCursor(User user, boolean shared) {
+		this(user, shared, null, null);
+	}
+
+	/**
+	 * Initialise un curseur placé avant le Post le plus récent de la tranche du
+	 * fil d'actualité du User spécifié formée des Post dont la date est comprise
+	 * entre from (incluse) et to (exclue). Seules les tranches correspondantes des
+	 * auteurs, trouvées par recherche dichotomique, sont fusionnées; le fil
+	 * matérialisé n'est pas utilisé.
+	 *
+	 * @requires user != null && from != null && to != null;
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	FeedCursor(User user, Instant from, Instant to) {
+		this(user, false, from, to);
+	}
+
+	private FeedCursor(User user, boolean shared, Instant from, Instant to) {
+		IdBitmap subscriptions = user.getSubscriptionIds();
+		this.authors = new User[subscriptions.cardinality() + 1];
+		this.authorIds = new int[authors.length - 1];
+		this.authors[0] = user;
+		int[] n = { 0 };
+		subscriptions.forEach(id -> {
+			authorIds[n[0]] = id;
+			authors[++n[0]] = UserRegistry.get(id);
+		});
+		this.cursors = new UserCursor[authors.length];
+		this.shared = shared ? new UserCursor[authors.length] : null;
+		int sum = 0;
+		for (int a = 0; a < authors.length; a++) {
+			// Instantané de chaque auteur, pris avant de marquer le fil matérialisé
+			PostLog log = authors[a].getPostLog();
+			int limit = authors[a].getPublishedNb();
+			int base = 0;
+			if (to != null) {
+				limit = log.rank(Timestamps.of(to), false, limit);
+				base = Math.min(log.rank(Timestamps.of(from), false, limit), limit);
+			}
+			cursors[a] = new UserCursor(authors[a], log, base, limit);
+			if (shared) {
+				this.shared[a] = authors[a].iteration();
+				this.shared[a].reset();
+			}
+			sum += limit - base;
+		}
+		this.total = sum;
+		this.nextIdx = 0;
+		this.lastIdx = -1;
+		this.lastUser = null;
+		this.timeline = to == null ? user.getTimeline() : null;
+		if (timeline != null) {
+			// Timeline sérialise ses modifications sur lui-même
+			synchronized (timeline) {
+				this.timelineLen = timeline.size();
+				this.pushMark = timeline.getPushNb();
+				this.layoutMark = timeline.getLayoutNb();
+			}
+		}
+		this.timelinePos = 0;
+		this.previousPos = -1;
+		this.floor = new int[authors.length];
+		this.covered = new boolean[authors.length];
+		this.floorReady = false;
+		// La source d'indice authors.length représente le fil matérialisé
+		this.nextHeap = new MergeHeap(authors.length + 1, this::compareNext);
+		this.previousHeap = new MergeHeap(authors.length + 1, this::comparePrevious);
+		for (int a = 0; a < authors.length; a++) {
+			if (timeline != null) {
+				covered[a] = a == 0 || !authors[a].isMergedOnRead();
+			}
+			if (!covered[a] && cursors[a].hasNext()) {
+				nextHeap.add(a);
+			}
+		}
+		if (!seekNext()) {
+			abandonTimeline();
+		} else if (nextEntry != null) {
+			nextHeap.add(authors.length);
+		} else {
+			exhaustTimeline();
+		}
+	}
+
+	/**
+	 * Renvoie le nombre de Post de l'instantané parcouru par ce curseur.
+	 *
+	 * @pure
+	 */
+	int size() {
+		return total;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextIdx < total;
+	}
+
+	@Override
+	public Post next() {
+		if (!hasNext() || nextHeap.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		int a = nextHeap.peek();
+		Post post;
+		if (a == authors.length) {
+			a = nextSlot;
+			post = cursors[a].next();
+			previousPos = timelinePos;
+			previousEntry = nextEntry;
+			previousSlot = nextSlot;
+			timelinePos++;
+			if (!seekNext()) {
+				abandonTimeline();
+			} else {
+				timelineMoved();
+				if (nextEntry == null) {
+					exhaustTimeline();
+				}
+			}
+		} else {
+			post = cursors[a].next();
+			moved(a);
+		}
+		if (shared != null) {
+			shared[a].follow(cursors[a]);
+		}
+		lastIdx = nextIdx;
+		nextIdx++;
+		lastUser = authors[a];
+		return post;
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return nextIdx > 0;
+	}
+
+	@Override
+	public Post previous() {
+		if (!hasPrevious() || previousHeap.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		int a = previousHeap.peek();
+		Post post;
+		if (a == authors.length) {
+			if (nextEntry == null) {
+				restoreTimeline();
+			}
+			a = previousSlot;
+			post = cursors[a].previous();
+			timelinePos = previousPos;
+			nextEntry = previousEntry;
+			nextSlot = previousSlot;
+			if (!seekPrevious()) {
+				abandonTimeline();
+			} else {
+				timelineMoved();
+			}
+		} else {
+			post = cursors[a].previous();
+			moved(a);
+		}
+		if (shared != null) {
+			shared[a].follow(cursors[a]);
+		}
+		nextIdx--;
+		lastIdx = nextIdx;
+		lastUser = authors[a];
+		return post;
+	}
+
+	@Override
+	public int nextIndex() {
+		return nextIdx;
+	}
+
+	@Override
+	public int previousIndex() {
+		return nextIdx - 1;
+	}
+
+	@Override
+	public int lastIndex() {
+		return lastIdx;
+	}
+
+	@Override
+	public User lastUser() {
+		return lastUser;
+	}
+
+	/**
+	 * Renvoie l'indice de source de l'auteur spécifié, ou -1 s'il n'est pas un
+	 * auteur de ce fil.
+	 */
+	private int slotOf(User author) {
+		if (author == authors[0]) {
+			return 0;
+		}
+		int i = Arrays.binarySearch(authorIds, author.getId());
+		return i < 0 ? -1 : i + 1;
+	}
+
+	/**
+	 * Place timelinePos sur le prochain Post du fil matérialisé appartenant à
+	 * l'instantané, en sautant les Post plus récents que l'instantané de leur
+	 * auteur. Renvoie false si l'état marqué du fil n'est plus lisible.
+	 */
+	private boolean seekNext() {
+		nextEntry = null;
+		for (; timeline != null && timelinePos < timelineLen; timelinePos++) {
+			Post p = timeline.getPost(timelinePos, pushMark, layoutMark);
+			User author = timeline.getAuthor(timelinePos, pushMark, layoutMark);
+			if (p == null || author == null) {
+				return false;
+			}
+			int a = slotOf(author);
+			if (a >= 0 && cursors[a].hasNext() && cursors[a].peekNext() == p) {
+				nextEntry = p;
+				nextSlot = a;
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Place previousPos sur le Post précédent timelinePos dans le fil matérialisé
+	 * et appartenant à l'instantané. Renvoie false si l'état marqué du fil n'est
+	 * plus lisible.
+	 */
+	private boolean seekPrevious() {
+		previousEntry = null;
+		for (previousPos = timelinePos - 1; previousPos >= 0; previousPos--) {
+			Post p = timeline.getPost(previousPos, pushMark, layoutMark);
+			User author = timeline.getAuthor(previousPos, pushMark, layoutMark);
+			if (p == null || author == null) {
+				return false;
+			}
+			int a = slotOf(author);
+			if (a >= 0 && cursors[a].hasPrevious() && cursors[a].peekPrevious() == p) {
+				previousEntry = p;
+				previousSlot = a;
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Renonce au fil matérialisé devenu illisible: tous les auteurs sont
+	 * désormais fusionnés à partir de leurs positions courantes.
+	 */
+	private void abandonTimeline() {
+		timeline = null;
+		nextEntry = null;
+		previousEntry = null;
+		nextHeap.clear();
+		previousHeap.clear();
+		for (int a = 0; a < authors.length; a++) {
+			covered[a] = false;
+			floor[a] = 0;
+			if (cursors[a].hasNext()) {
+				nextHeap.add(a);
+			}
+			if (cursors[a].hasPrevious()) {
+				previousHeap.add(a);
+			}
+		}
+	}
+
+	/**
+	 * Fait entrer dans le tas des Post suivants les auteurs couverts par le fil
+	 * matérialisé, une fois tous ses Post parcourus. Leurs Post déjà lus via le
+	 * fil matérialisé ne sont jamais placés dans le tas des Post précédents.
+	 */
+	private void exhaustTimeline() {
+		for (int a = 0; a < authors.length; a++) {
+			if (covered[a]) {
+				if (!floorReady) {
+					floor[a] = cursors[a].nextIndex();
+				}
+				if (cursors[a].hasNext()) {
+					nextHeap.add(a);
+				}
+			}
+		}
+		floorReady = true;
+	}
+
+	/**
+	 * Retire du tas des Post suivants les auteurs couverts par le fil matérialisé
+	 * lorsque l'itération revient dans ce fil.
+	 */
+	private void restoreTimeline() {
+		for (int a = 0; a < authors.length; a++) {
+			if (covered[a]) {
+				nextHeap.remove(a);
+			}
+		}
+	}
+
+	/**
+	 * Replace le fil matérialisé dans les deux tas après un déplacement dans ce
+	 * fil.
+	 */
+	private void timelineMoved() {
+		int t = authors.length;
+		place(nextHeap, t, nextEntry != null);
+		place(previousHeap, t, previousEntry != null);
+	}
+
+	/**
+	 * Replace l'auteur spécifié dans les deux tas après un déplacement de son
+	 * curseur.
+	 */
+	private void moved(int a) {
+		boolean inNext = cursors[a].hasNext() && (!covered[a] || nextEntry == null);
+		place(nextHeap, a, inNext);
+		place(previousHeap, a, cursors[a].previousIndex() >= floor[a]);
+	}
+
+	private static void place(MergeHeap heap, int source, boolean present) {
+		if (!present) {
+			heap.remove(source);
+		} else if (heap.contains(source)) {
+			heap.update(source);
+		} else {
+			heap.add(source);
+		}
+	}
+
+	/**
+	 * Renvoie le prochain Post (plus ancien) de la source spécifiée.
+	 */
+	private Post nextOf(int a) {
+		if (a == authors.length) {
+			return nextEntry;
+		}
+		return cursors[a].peekNext();
+	}
+
+	/**
+	 * Renvoie le Post précédent (plus récent) de la source spécifiée.
+	 */
+	private Post previousOf(int a) {
+		if (a == authors.length) {
+			return previousEntry;
+		}
+		return cursors[a].peekPrevious();
+	}
+
+	/**
+	 * Ordre du tas des Post suivants: le Post le plus récent en premier.
+	 */
+	private int compareNext(int a, int b) {
+		int cmp = Long.compare(nextOf(b).getTimestamp(), nextOf(a).getTimestamp());
+		return cmp != 0 ? cmp : Integer.compare(a, b);
+	}
+
+	/**
+	 * Ordre du tas des Post précédents: le Post le plus ancien en premier.
+	 */
+	private int comparePrevious(int a, int b) {
+		int cmp = Long.compare(previousOf(a).getTimestamp(), previousOf(b).getTimestamp());
+		return cmp != 0 ? cmp : Integer.compare(b, a);
+	}
+}
@@ -0,0 +1,90 @@
+package sociald1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page du fil d'actualité d'un User, renvoyée par
+ * NewsFeed.page(User, PageToken, int): une suite de Post ordonnés du plus
+ * récent au plus ancien, avec leurs auteurs, et le jeton permettant d'obtenir
+ * la page suivante.
+ *
+ * @invariant getPosts() != null && !getPosts().contains(null);
+ * @invariant getAuthors() != null && getAuthors().size() == getPosts().size();
+ * @invariant (\forall int i; i >= 0 && i < getPosts().size();
+ *            getAuthors().get(i).getPosts().contains(getPosts().get(i)));
+ * @invariant (\forall int i; i >= 1 && i < getPosts().size();
+ *            !getPosts().get(i).isAfter(getPosts().get(i - 1)));
+ * @invariant getNextToken() == null ==> !hasMore();
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class FeedPage {
+	private final List<Post> posts;
+	private final List<User> authors;
+	private final PageToken nextToken;
+	private final boolean more;
+
+	/**
+	 * Initialise une page.
+	 *
+	 * @requires posts != null && authors != null;
+	 * @requires posts.size() == authors.size();
+	 */
+	FeedPage(List<Post> posts, List<User> authors, PageToken nextToken, boolean more) {
+		this.posts = Collections.unmodifiableList(posts);
+		this.authors = Collections.unmodifiableList(authors);
+		this.nextToken = nextToken;
+		this.more = more;
+	}
+
+	/**
+	 * Renvoie la liste non modifiable des Post de cette page, du plus récent au
+	 * plus ancien.
+	 *
+	 * @return les Post de cette page
+	 *
+	 * @pure
+	 */
+	public List<Post> getPosts() {
+		return posts;
+	}
+
+	/**
+	 * Renvoie la liste non modifiable des auteurs des Post de cette page: le ième
+	 * élément est l'auteur du ième Post.
+	 *
+	 * @return les auteurs des Post de cette page
+	 *
+	 * @pure
+	 */
+	public List<User> getAuthors() {
+		return authors;
+	}
+
+	/**
+	 * Renvoie le jeton désignant le dernier Post de cette page, à transmettre à
+	 * NewsFeed.page(User, PageToken, int) pour obtenir la page suivante; null si
+	 * cette page est vide.
+	 *
+	 * @return le jeton de la page suivante, ou null
+	 *
+	 * @pure
+	 */
+	public PageToken getNextToken() {
+		return nextToken;
+	}
+
+	/**
+	 * Renvoie true si des Post plus anciens que ceux de cette page existaient au
+	 * moment où elle a été construite.
+	 *
+	 * @return true s'il existe une page suivante non vide
+	 *
+	 * @pure
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+}
@@ -0,0 +1,305 @@
+package sociald1;
+
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Générateur reproductible de réseaux sociaux synthétiques.
+ *
+ * <p>Un GraphGenerator crée userNb User puis leurs abonnements, puis postNb
+ * Post et leurs "likes", en tirant toutes ses valeurs d'un générateur
+ * pseudo-aléatoire initialisé par la graine spécifiée: deux générations de
+ * mêmes paramètres produisent le même réseau. Les distributions suivent celles
+ * observées sur les réseaux réels:
+ * <ul>
+ * <li>le nombre d'abonnés d'un User suit une loi de puissance d'exposant
+ * getFollowerExponent(): l'abonnement d'un User est tiré selon une loi de Zipf
+ * sur la popularité des User, chaque User ayant en moyenne
+ * getMeanSubscriptions() abonnements</li>
+ * <li>l'auteur de chaque Post est tiré selon une loi de Zipf d'exposant
+ * getPostingExponent() sur l'activité des User, indépendante de leur
+ * popularité</li>
+ * <li>le nombre de "likes" d'un Post suit une loi de Pareto d'exposant
+ * getLikeExponent() et de moyenne getMeanLikes(); les auteurs des "likes" sont
+ * tirés selon la popularité des User</li>
+ * </ul></p>
+ *
+ * Les User et les Post sont transmis au fur et à mesure de leur création aux
+ * consommateurs spécifiés à generate(Consumer, Consumer), sans qu'aucune liste
+ * intermédiaire ne soit conservée: la mémoire nécessaire est celle du réseau
+ * lui-même, ce qui permet de générer des réseaux de plusieurs millions de Post.
+ * Les lois de Zipf sont tirées par inversion de leur fonction de répartition
+ * continue, en O(1) et sans table.
+ *
+ * <pre>{@code
+ * GraphGenerator gen = new GraphGenerator(42L, 100_000, 10_000_000);
+ * gen.setMeanSubscriptions(50);
+ * gen.generate(u -> {}, p -> {});
+ * }</pre>
+ *
+ * @invariant getUserNb() > 0 && getPostNb() >= 0;
+ * @invariant getMeanSubscriptions() >= 0 && getMeanLikes() >= 0;
+ * @invariant getFollowerExponent() >= 0 && getPostingExponent() >= 0;
+ * @invariant getLikeExponent() > 1;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public class GraphGenerator {
+	private final long seed;
+	private final int userNb;
+	private final int postNb;
+	private double meanSubscriptions = 20;
+	private double followerExponent = 1.0;
+	private double postingExponent = 1.0;
+	private double meanLikes = 1;
+	private double likeExponent = 2.0;
+	private IntFunction<String> userNames = i -> "user" + i;
+
+	/**
+	 * Initialise un générateur de réseaux de userNb User et postNb Post, dont les
+	 * tirages sont déterminés par la graine spécifiée.
+	 *
+	 * @param seed   graine du générateur pseudo-aléatoire
+	 * @param userNb nombre de User à créer
+	 * @param postNb nombre de Post à créer
+	 *
+	 * @throws IllegalArgumentException si userNb <= 0 ou postNb < 0
+	 *
+	 * @requires userNb > 0 && postNb >= 0;
+	 * @ensures getSeed() == seed;
+	 * @ensures getUserNb() == userNb;
+	 * @ensures getPostNb() == postNb;
+	 */
+	public GraphGenerator(long seed, int userNb, int postNb) {
+		if (userNb <= 0 || postNb < 0) {
+			throw new IllegalArgumentException("Taille de réseau invalide: " + userNb + " User, " + postNb + " Post");
+		}
+		this.seed = seed;
+		this.userNb = userNb;
+		this.postNb = postNb;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getUserNb() {
+		return userNb;
+	}
+
+	public int getPostNb() {
+		return postNb;
+	}
+
+	public double getMeanSubscriptions() {
+		return meanSubscriptions;
+	}
+
+	/**
+	 * Fixe le nombre moyen d'abonnements de chaque User. Le nombre d'abonnements
+	 * d'un User est tiré uniformément entre 0 et le double de cette moyenne, et
+	 * borné par getUserNb() - 1.
+	 *
+	 * @requires meanSubscriptions >= 0;
+	 * @ensures getMeanSubscriptions() == meanSubscriptions;
+	 */
+	public void setMeanSubscriptions(double meanSubscriptions) {
+		if (meanSubscriptions < 0) {
+			throw new IllegalArgumentException("Nombre moyen d'abonnements négatif: " + meanSubscriptions);
+		}
+		this.meanSubscriptions = meanSubscriptions;
+	}
+
+	public double getFollowerExponent() {
+		return followerExponent;
+	}
+
+	/**
+	 * Fixe l'exposant de la loi de Zipf selon laquelle les abonnements sont tirés:
+	 * 0 pour une popularité uniforme, d'autant plus concentrée sur quelques User
+	 * que l'exposant est grand.
+	 *
+	 * @requires followerExponent >= 0;
+	 * @ensures getFollowerExponent() == followerExponent;
+	 */
+	public void setFollowerExponent(double followerExponent) {
+		if (followerExponent < 0) {
+			throw new IllegalArgumentException("Exposant négatif: " + followerExponent);
+		}
+		this.followerExponent = followerExponent;
+	}
+
+	public double getPostingExponent() {
+		return postingExponent;
+	}
+
+	/**
+	 * Fixe l'exposant de la loi de Zipf selon laquelle l'auteur de chaque Post est
+	 * tiré: 0 pour une activité uniforme.
+	 *
+	 * @requires postingExponent >= 0;
+	 * @ensures getPostingExponent() == postingExponent;
+	 */
+	public void setPostingExponent(double postingExponent) {
+		if (postingExponent < 0) {
+			throw new IllegalArgumentException("Exposant négatif: " + postingExponent);
+		}
+		this.postingExponent = postingExponent;
+	}
+
+	public double getMeanLikes() {
+		return meanLikes;
+	}
+
+	/**
+	 * Fixe le nombre moyen de "likes" de chaque Post.
+	 *
+	 * @requires meanLikes >= 0;
+	 * @ensures getMeanLikes() == meanLikes;
+	 */
+	public void setMeanLikes(double meanLikes) {
+		if (meanLikes < 0) {
+			throw new IllegalArgumentException("Nombre moyen de likes négatif: " + meanLikes);
+		}
+		this.meanLikes = meanLikes;
+	}
+
+	public double getLikeExponent() {
+		return likeExponent;
+	}
+
+	/**
+	 * Fixe l'exposant de la loi de Pareto du nombre de "likes" d'un Post: plus il
+	 * est proche de 1, plus les "likes" se concentrent sur quelques Post.
+	 *
+	 * @requires likeExponent > 1;
+	 * @ensures getLikeExponent() == likeExponent;
+	 */
+	public void setLikeExponent(double likeExponent) {
+		if (!(likeExponent > 1)) {
+			throw new IllegalArgumentException("Exposant de Pareto <= 1: " + likeExponent);
+		}
+		this.likeExponent = likeExponent;
+	}
+
+	/**
+	 * Fixe la fonction donnant le nom du ième User créé. Son mot de passe est ce
+	 * nom préfixé par "pass".
+	 *
+	 * @requires userNames != null;
+	 * @requires (\forall int i; i >= 0 && i < getUserNb();
+	 *           userNames.apply(i) != null && !userNames.apply(i).isBlank());
+	 */
+	public void setUserNames(IntFunction<String> userNames) {
+		this.userNames = userNames;
+	}
+
+	/**
+	 * Crée le réseau: les getUserNb() User, leurs abonnements, puis les
+	 * getPostNb() Post et leurs "likes". Chaque User est transmis à onUser après
+	 * sa création, avant tout abonnement; chaque Post est transmis à onPost après
+	 * avoir reçu ses "likes".
+	 *
+	 * @param onUser consommateur des User créés
+	 * @param onPost consommateur des Post créés
+	 *
+	 * @throws IllegalStateException si d'autres User sont créés pendant la
+	 *                               génération
+	 *
+	 * @requires onUser != null && onPost != null;
+	 */
+	public void generate(Consumer<? super User> onUser, Consumer<? super Post> onPost) {
+		SplittableRandom rand = new SplittableRandom(seed);
+		// Les User sont enregistrés consécutivement: le ième a l'identifiant first + i
+		int first = -1;
+		for (int i = 0; i < userNb; i++) {
+			User u = new User(userNames.apply(i), "pass" + userNames.apply(i));
+			if (i == 0) {
+				first = u.getId();
+			} else if (u.getId() != first + i) {
+				throw new IllegalStateException("User créés en concurrence de la génération");
+			}
+			onUser.accept(u);
+		}
+		// Rangs de popularité et d'activité: deux permutations indépendantes des User
+		Permutation popularity = new Permutation(userNb, rand);
+		Permutation activity = new Permutation(userNb, rand);
+
+		int maxSubscriptions = Math.min((int) Math.round(2 * meanSubscriptions), userNb - 1);
+		for (int i = 0; i < userNb; i++) {
+			User u = UserRegistry.get(first + i);
+			int subNb = maxSubscriptions > 0 ? rand.nextInt(maxSubscriptions + 1) : 0;
+			// Les doublons sont retirés: au plus 4 tirages par abonnement
+			for (int tries = 4 * subNb; u.getSubscriptionNb() < subNb && tries > 0; tries--) {
+				User s = UserRegistry.get(first + popularity.get(zipf(rand, followerExponent)));
+				if (s != u) {
+					u.addSubscription(s);
+				}
+			}
+		}
+
+		double likeScale = meanLikes * (likeExponent - 1) / likeExponent;
+		for (int i = 0; i < postNb; i++) {
+			User author = UserRegistry.get(first + activity.get(zipf(rand, postingExponent)));
+			Post p = author.addPost("Message n°" + i + " de " + author.getName());
+			double pareto = likeScale * Math.pow(1 - rand.nextDouble(), -1 / likeExponent);
+			// Arrondi aléatoire: l'espérance du nombre de "likes" reste getMeanLikes()
+			long likeNb = Math.min((long) (pareto + rand.nextDouble()), userNb);
+			for (long k = 0; k < likeNb; k++) {
+				p.addLikeFrom(UserRegistry.get(first + popularity.get(zipf(rand, followerExponent))));
+			}
+			onPost.accept(p);
+		}
+	}
+
+	/**
+	 * Renvoie un rang entre 0 et userNb - 1 tiré selon une loi de Zipf d'exposant
+	 * a, approchée par la loi de puissance continue sur [1, userNb + 1[.
+	 */
+	private int zipf(SplittableRandom rand, double a) {
+		double u = rand.nextDouble();
+		double x;
+		if (a == 1) {
+			x = Math.pow(userNb + 1, u);
+		} else {
+			double b = 1 - a;
+			x = Math.pow((Math.pow(userNb + 1, b) - 1) * u + 1, 1 / b);
+		}
+		return Math.min((int) x - 1, userNb - 1);
+	}
+
+	/**
+	 * Permutation affine k -> (k * stride + shift) mod n des entiers de 0 à n - 1,
+	 * qui associe un User à chaque rang sans table.
+	 */
+	private static final class Permutation {
+		private final long n;
+		private final long stride;
+		private final long shift;
+
+		Permutation(int n, SplittableRandom rand) {
+			this.n = n;
+			long s = 1 + rand.nextInt(n);
+			while (gcd(s, n) != 1) {
+				s++;
+			}
+			this.stride = s % n;
+			this.shift = rand.nextInt(n);
+		}
+
+		int get(int k) {
+			return (int) ((k * stride + shift) % n);
+		}
+
+		private static long gcd(long a, long b) {
+			while (b != 0) {
+				long t = a % b;
+				a = b;
+				b = t;
+			}
+			return a;
+		}
+	}
+}
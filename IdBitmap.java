@@ -0,0 +1,736 @@
+package sociald1;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Ensemble compressé d'entiers positifs ou nuls, utilisé pour mémoriser des
+ * ensembles d'identifiants de User (voir UserRegistry).
+ *
+ * Les entiers sont répartis par paquets de 65536 selon leurs 16 bits de poids
+ * fort. Chaque paquet non vide est représenté par le conteneur le plus compact
+ * parmi trois:
+ * <ul>
+ * <li>un tableau trié des 16 bits de poids faible, tant que le paquet contient
+ * au plus 4096 entiers</li>
+ * <li>une carte de 65536 bits au-delà</li>
+ * <li>une liste d'intervalles [début, début + longueur], après un appel à
+ * runOptimize(), lorsque le paquet est formé de longues suites
+ * d'entiers consécutifs</li>
+ * </ul>
+ * Un ensemble d'un million d'identifiants occupe ainsi au plus environ 128 Ko,
+ * contre plusieurs dizaines de Mo pour un HashSet de références. L'ajout, le
+ * test d'appartenance et le retrait coûtent O(log n) dans le pire cas (O(1)
+ * dans une carte de bits) et l'intersection de deux ensembles se fait paquet
+ * par paquet.
+ *
+ * @invariant cardinality() >= 0;
+ * @invariant isEmpty() <==> cardinality() == 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class IdBitmap {
+	private static final int ARRAY_MAX = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	// Paquets triés selon leurs 16 bits de poids fort
+	private char[] keys;
+	private Container[] containers;
+	private int chunkNb;
+	private int cardinality;
+
+	/**
+	 * Initialise un ensemble vide.
+	 *
+	 * @ensures isEmpty();
+	 */
+	public IdBitmap() {
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.chunkNb = 0;
+		this.cardinality = 0;
+	}
+
+	/**
+	 * Initialise une copie de l'ensemble spécifié.
+	 *
+	 * @param other l'ensemble à copier
+	 *
+	 * @requires other != null;
+	 * @ensures equals(other);
+	 */
+	public IdBitmap(IdBitmap other) {
+		this.keys = Arrays.copyOf(other.keys, Math.max(4, other.chunkNb));
+		this.containers = new Container[keys.length];
+		for (int i = 0; i < other.chunkNb; i++) {
+			this.containers[i] = other.containers[i].copy();
+		}
+		this.chunkNb = other.chunkNb;
+		this.cardinality = other.cardinality;
+	}
+
+	/**
+	 * Renvoie le nombre d'entiers de cet ensemble.
+	 *
+	 * @return le nombre d'entiers de cet ensemble
+	 *
+	 * @pure
+	 */
+	public int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Renvoie true si cet ensemble est vide.
+	 *
+	 * @return true si cet ensemble est vide
+	 *
+	 * @pure
+	 */
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	/**
+	 * Renvoie true si l'entier spécifié appartient à cet ensemble.
+	 *
+	 * @param x l'entier cherché
+	 *
+	 * @return true si x appartient à cet ensemble
+	 *
+	 * @pure
+	 */
+	public boolean contains(int x) {
+		if (x < 0) {
+			return false;
+		}
+		int i = indexOf((char) (x >>> 16));
+		return i >= 0 && containers[i].contains((char) x);
+	}
+
+	/**
+	 * Ajoute l'entier spécifié à cet ensemble.
+	 *
+	 * @param x l'entier à ajouter
+	 *
+	 * @return true si x n'appartenait pas déjà à cet ensemble
+	 *
+	 * @requires x >= 0;
+	 * @ensures contains(x);
+	 * @ensures \result <==> !\old(contains(x));
+	 * @ensures \result ==> cardinality() == \old(cardinality()) + 1;
+	 */
+	public boolean add(int x) {
+		char key = (char) (x >>> 16);
+		int i = indexOf(key);
+		if (i < 0) {
+			i = -i - 1;
+			insertChunk(i, key, new ArrayContainer());
+		}
+		Container c = containers[i];
+		int before = c.cardinality();
+		c = c.add((char) x);
+		containers[i] = c;
+		if (c.cardinality() == before) {
+			return false;
+		}
+		cardinality++;
+		return true;
+	}
+
+	/**
+	 * Retire l'entier spécifié de cet ensemble.
+	 *
+	 * @param x l'entier à retirer
+	 *
+	 * @return true si x appartenait à cet ensemble
+	 *
+	 * @ensures !contains(x);
+	 * @ensures \result <==> \old(contains(x));
+	 * @ensures \result ==> cardinality() == \old(cardinality()) - 1;
+	 */
+	public boolean remove(int x) {
+		if (x < 0) {
+			return false;
+		}
+		int i = indexOf((char) (x >>> 16));
+		if (i < 0) {
+			return false;
+		}
+		Container c = containers[i];
+		int before = c.cardinality();
+		c = c.remove((char) x);
+		if (c.cardinality() == before) {
+			return false;
+		}
+		cardinality--;
+		if (c.cardinality() == 0) {
+			removeChunk(i);
+		} else {
+			containers[i] = c;
+		}
+		return true;
+	}
+
+	/**
+	 * Renvoie un nouvel ensemble contenant les entiers appartenant à la fois à cet
+	 * ensemble et à l'ensemble spécifié.
+	 *
+	 * @param other l'ensemble avec lequel calculer l'intersection
+	 *
+	 * @return l'intersection de cet ensemble et de l'ensemble spécifié
+	 *
+	 * @requires other != null;
+	 * @ensures (\forall int x; \result.contains(x) <==> contains(x) &&
+	 *          other.contains(x));
+	 *
+	 * @pure
+	 */
+	public IdBitmap and(IdBitmap other) {
+		IdBitmap result = new IdBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < chunkNb && j < other.chunkNb) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container c = containers[i].and(other.containers[j]);
+				if (c.cardinality() > 0) {
+					result.insertChunk(result.chunkNb, keys[i], c);
+					result.cardinality += c.cardinality();
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre d'entiers appartenant à la fois à cet ensemble et à
+	 * l'ensemble spécifié, sans construire l'intersection lorsque les deux paquets
+	 * sont des cartes de bits.
+	 *
+	 * @param other l'ensemble avec lequel calculer l'intersection
+	 *
+	 * @return le cardinal de l'intersection
+	 *
+	 * @requires other != null;
+	 * @ensures \result == and(other).cardinality();
+	 *
+	 * @pure
+	 */
+	public int andCardinality(IdBitmap other) {
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < chunkNb && j < other.chunkNb) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container a = containers[i];
+				Container b = other.containers[j];
+				if (a instanceof BitmapContainer && b instanceof BitmapContainer) {
+					n += ((BitmapContainer) a).andCardinality((BitmapContainer) b);
+				} else {
+					n += a.and(b).cardinality();
+				}
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Applique l'action spécifiée à chaque entier de cet ensemble, par ordre
+	 * croissant.
+	 *
+	 * @param action l'action à appliquer
+	 *
+	 * @requires action != null;
+	 */
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < chunkNb; i++) {
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	/**
+	 * Renvoie le plus petit entier de cet ensemble supérieur ou égal à l'entier
+	 * spécifié, ou -1 s'il n'en existe pas. Permet de parcourir l'ensemble par
+	 * ordre croissant sans le copier.
+	 *
+	 * @param from la borne inférieure (incluse) de l'entier cherché
+	 *
+	 * @return le plus petit entier >= from de cet ensemble, ou -1
+	 *
+	 * @ensures \result == -1 || (\result >= from && contains(\result));
+	 *
+	 * @pure
+	 */
+	public int nextValue(int from) {
+		if (from < 0) {
+			from = 0;
+		}
+		char key = (char) (from >>> 16);
+		int i = indexOf(key);
+		if (i >= 0) {
+			int v = containers[i].nextValue(from & 0xFFFF);
+			if (v >= 0) {
+				return (key << 16) | v;
+			}
+			i++;
+		} else {
+			i = -i - 1;
+		}
+		// Les conteneurs ne sont jamais vides
+		return i < chunkNb ? (keys[i] << 16) | containers[i].nextValue(0) : -1;
+	}
+
+	/**
+	 * Remplace par des listes d'intervalles les paquets pour lesquels cette
+	 * représentation est plus compacte, et inversement.
+	 */
+	public void runOptimize() {
+		for (int i = 0; i < chunkNb; i++) {
+			containers[i] = containers[i].runOptimize();
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof IdBitmap)) {
+			return false;
+		}
+		IdBitmap other = (IdBitmap) o;
+		return cardinality == other.cardinality && andCardinality(other) == cardinality;
+	}
+
+	@Override
+	public int hashCode() {
+		int[] h = { cardinality };
+		forEach(x -> h[0] = 31 * h[0] + x);
+		return h[0];
+	}
+
+	private int indexOf(char key) {
+		return Arrays.binarySearch(keys, 0, chunkNb, key);
+	}
+
+	private void insertChunk(int i, char key, Container c) {
+		if (chunkNb == keys.length) {
+			keys = Arrays.copyOf(keys, keys.length * 2);
+			containers = Arrays.copyOf(containers, containers.length * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, chunkNb - i);
+		System.arraycopy(containers, i, containers, i + 1, chunkNb - i);
+		keys[i] = key;
+		containers[i] = c;
+		chunkNb++;
+	}
+
+	private void removeChunk(int i) {
+		System.arraycopy(keys, i + 1, keys, i, chunkNb - i - 1);
+		System.arraycopy(containers, i + 1, containers, i, chunkNb - i - 1);
+		chunkNb--;
+		containers[chunkNb] = null;
+	}
+
+	/**
+	 * Conteneur des 16 bits de poids faible des entiers d'un paquet. Les
+	 * opérations de modification renvoient le conteneur à utiliser ensuite, qui
+	 * peut être d'un autre type.
+	 */
+	private abstract static class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(char x);
+
+		abstract Container add(char x);
+
+		abstract Container remove(char x);
+
+		abstract void forEach(int high, IntConsumer action);
+
+		/**
+		 * Renvoie la plus petite valeur >= from de ce conteneur, ou -1.
+		 */
+		abstract int nextValue(int from);
+
+		abstract Container copy();
+
+		Container and(Container other) {
+			ArrayContainer result = new ArrayContainer();
+			Container c = result;
+			Container small = cardinality() <= other.cardinality() ? this : other;
+			Container large = small == this ? other : this;
+			int[] values = small.toArray();
+			for (int v : values) {
+				if (large.contains((char) v)) {
+					c = c.add((char) v);
+				}
+			}
+			return c;
+		}
+
+		int[] toArray() {
+			int[] values = new int[cardinality()];
+			int[] n = { 0 };
+			forEach(0, v -> values[n[0]++] = v);
+			return values;
+		}
+
+		Container runOptimize() {
+			int[] values = toArray();
+			int runs = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (i == 0 || values[i] != values[i - 1] + 1) {
+					runs++;
+				}
+			}
+			// 4 octets par intervalle, 2 par entier dans un tableau, 8 Ko pour une carte
+			int runBytes = 4 * runs;
+			int otherBytes = values.length <= ARRAY_MAX ? 2 * values.length : 8 * BITMAP_WORDS;
+			Container c;
+			if (runBytes < otherBytes) {
+				if (this instanceof RunContainer) {
+					return this;
+				}
+				c = new RunContainer();
+			} else if (this instanceof RunContainer) {
+				c = new ArrayContainer();
+			} else {
+				return this;
+			}
+			for (int v : values) {
+				c = c.add((char) v);
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * Tableau trié, pour les paquets contenant au plus ARRAY_MAX entiers.
+	 */
+	private static final class ArrayContainer extends Container {
+		private char[] values = new char[4];
+		private int size = 0;
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return Arrays.binarySearch(values, 0, size, x) >= 0;
+		}
+
+		@Override
+		Container add(char x) {
+			int i = Arrays.binarySearch(values, 0, size, x);
+			if (i >= 0) {
+				return this;
+			}
+			if (size == ARRAY_MAX) {
+				return toBitmap().add(x);
+			}
+			i = -i - 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+			}
+			System.arraycopy(values, i, values, i + 1, size - i);
+			values[i] = x;
+			size++;
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			int i = Arrays.binarySearch(values, 0, size, x);
+			if (i >= 0) {
+				System.arraycopy(values, i + 1, values, i, size - i - 1);
+				size--;
+			}
+			return this;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int i = 0; i < size; i++) {
+				action.accept(high | values[i]);
+			}
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = Arrays.binarySearch(values, 0, size, (char) from);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			return i < size ? values[i] : -1;
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer c = new ArrayContainer();
+			c.values = Arrays.copyOf(values, Math.max(4, size));
+			c.size = size;
+			return c;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i < size; i++) {
+				b.add(values[i]);
+			}
+			return b;
+		}
+	}
+
+	/**
+	 * Carte de 65536 bits, pour les paquets denses.
+	 */
+	private static final class BitmapContainer extends Container {
+		private final long[] words = new long[BITMAP_WORDS];
+		private int size = 0;
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return (words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		@Override
+		Container add(char x) {
+			long before = words[x >>> 6];
+			long after = before | (1L << x);
+			if (after != before) {
+				words[x >>> 6] = after;
+				size++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			long before = words[x >>> 6];
+			long after = before & ~(1L << x);
+			if (after != before) {
+				words[x >>> 6] = after;
+				size--;
+			}
+			if (size <= ARRAY_MAX / 2) {
+				ArrayContainer a = new ArrayContainer();
+				Container c = a;
+				for (int v : toArray()) {
+					c = c.add((char) v);
+				}
+				return c;
+			}
+			return this;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		int nextValue(int from) {
+			int w = from >>> 6;
+			long word = words[w] & (-1L << from);
+			while (word == 0) {
+				if (++w == BITMAP_WORDS) {
+					return -1;
+				}
+				word = words[w];
+			}
+			return (w << 6) | Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer c = new BitmapContainer();
+			System.arraycopy(words, 0, c.words, 0, BITMAP_WORDS);
+			c.size = size;
+			return c;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (!(other instanceof BitmapContainer)) {
+				return super.and(other);
+			}
+			BitmapContainer b = (BitmapContainer) other;
+			BitmapContainer result = new BitmapContainer();
+			int n = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				result.words[w] = words[w] & b.words[w];
+				n += Long.bitCount(result.words[w]);
+			}
+			result.size = n;
+			if (n > ARRAY_MAX) {
+				return result;
+			}
+			Container c = new ArrayContainer();
+			for (int v : result.toArray()) {
+				c = c.add((char) v);
+			}
+			return c;
+		}
+
+		int andCardinality(BitmapContainer b) {
+			int n = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				n += Long.bitCount(words[w] & b.words[w]);
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Liste triée d'intervalles disjoints et non adjacents, chacun représenté par
+	 * son début et sa longueur moins un.
+	 */
+	private static final class RunContainer extends Container {
+		private char[] runs = new char[4];
+		private int runNb = 0;
+		private int size = 0;
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char x) {
+			int i = runIndex(x);
+			return i >= 0 && x <= runs[2 * i] + runs[2 * i + 1];
+		}
+
+		@Override
+		Container add(char x) {
+			int i = runIndex(x);
+			if (i >= 0 && x <= runs[2 * i] + runs[2 * i + 1]) {
+				return this;
+			}
+			size++;
+			boolean extendsPrevious = i >= 0 && x == runs[2 * i] + runs[2 * i + 1] + 1;
+			boolean extendsNext = i + 1 < runNb && x + 1 == runs[2 * (i + 1)];
+			if (extendsPrevious && extendsNext) {
+				runs[2 * i + 1] = (char) (runs[2 * i + 1] + runs[2 * i + 3] + 2);
+				deleteRun(i + 1);
+			} else if (extendsPrevious) {
+				runs[2 * i + 1]++;
+			} else if (extendsNext) {
+				runs[2 * (i + 1)] = x;
+				runs[2 * (i + 1) + 1]++;
+			} else {
+				insertRun(i + 1, x, (char) 0);
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			int i = runIndex(x);
+			if (i < 0 || x > runs[2 * i] + runs[2 * i + 1]) {
+				return this;
+			}
+			size--;
+			char start = runs[2 * i];
+			int end = start + runs[2 * i + 1];
+			if (start == end) {
+				deleteRun(i);
+			} else if (x == start) {
+				runs[2 * i] = (char) (start + 1);
+				runs[2 * i + 1]--;
+			} else if (x == end) {
+				runs[2 * i + 1]--;
+			} else {
+				runs[2 * i + 1] = (char) (x - start - 1);
+				insertRun(i + 1, (char) (x + 1), (char) (end - x - 1));
+			}
+			return this;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int i = 0; i < runNb; i++) {
+				int start = runs[2 * i];
+				int end = start + runs[2 * i + 1];
+				for (int v = start; v <= end; v++) {
+					action.accept(high | v);
+				}
+			}
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = runIndex((char) from);
+			if (i >= 0 && from <= runs[2 * i] + runs[2 * i + 1]) {
+				return from;
+			}
+			return i + 1 < runNb ? runs[2 * (i + 1)] : -1;
+		}
+
+		@Override
+		Container copy() {
+			RunContainer c = new RunContainer();
+			c.runs = Arrays.copyOf(runs, Math.max(4, 2 * runNb));
+			c.runNb = runNb;
+			c.size = size;
+			return c;
+		}
+
+		/**
+		 * Renvoie l'indice du dernier intervalle commençant avant ou sur x, -1 s'il
+		 * n'en existe pas.
+		 */
+		private int runIndex(char x) {
+			int lo = 0;
+			int hi = runNb - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (runs[2 * mid] <= x) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return lo - 1;
+		}
+
+		private void insertRun(int i, char start, char length) {
+			if (2 * runNb + 2 > runs.length) {
+				runs = Arrays.copyOf(runs, runs.length * 2);
+			}
+			System.arraycopy(runs, 2 * i, runs, 2 * i + 2, 2 * (runNb - i));
+			runs[2 * i] = start;
+			runs[2 * i + 1] = length;
+			runNb++;
+		}
+
+		private void deleteRun(int i) {
+			System.arraycopy(runs, 2 * i + 2, runs, 2 * i, 2 * (runNb - i - 1));
+			runNb--;
+		}
+	}
+}
@@ -0,0 +1,739 @@
+package sociald1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal persistant des modifications du réseau social Microdon.
+ *
+ * Une fois ouvert (voir open(Path)), le journal enregistre chaque création de
+ * User, chaque Post créé par User.addPost(String) (auteur, date et texte),
+ * chaque "like" et chaque abonnement ou désabonnement. Les enregistrements sont
+ * ajoutés les uns après les autres dans des fichiers segments de taille fixe,
+ * projetés en mémoire (MappedByteBuffer): une écriture est une simple copie en
+ * mémoire, sans appel système, et le système d'exploitation écrit les pages
+ * modifiées sur disque.
+ *
+ * Les modifications ne prennent aucun verrou du journal: chaque appelant code
+ * son enregistrement (contenu et somme de contrôle) dans un tableau qu'il
+ * ajoute à une file sans verrou. Un unique thread d'écriture vide cette file,
+ * copie les enregistrements dans le segment courant et force sur disque, en un
+ * seul appel, tous ceux qu'il a copiés, au plus COMMIT_INTERVAL_MILLIS
+ * millisecondes après leur ajout. Un appelant qui doit attendre que ses
+ * modifications soient durables obtient par flush() un CompletableFuture,
+ * complété par l'écriture groupée qui les contient: les modifications d'autant
+ * d'appelants qu'il en arrive pendant une écriture sont rendues durables par
+ * l'écriture suivante, et le nombre de modifications durables par seconde
+ * n'est pas limité par le nombre d'écritures sur disque par seconde. Si une
+ * écriture échoue, les CompletableFuture en attente sont complétés
+ * exceptionnellement et les enregistrements concernés sont réécrits par la
+ * suivante. Un appelant qui n'attend pas perd au plus les
+ * COMMIT_INTERVAL_MILLIS dernières millisecondes de modifications lors d'un
+ * arrêt brutal du système. sync() force l'écriture immédiatement; close()
+ * l'effectue aussi.
+ *
+ * À l'ouverture, les segments existants sont relus dans l'ordre et leurs
+ * enregistrements rejoués sur le modèle, ce qui recrée les User avec leurs
+ * identifiants d'origine, les Post à leurs dates d'origine, les "likes" et les
+ * abonnements. Chaque enregistrement porte une somme de contrôle (CRC32): un
+ * enregistrement incomplet, écrit lors d'un arrêt brutal, termine la relecture
+ * et est écrasé par les ajouts suivants.
+ *
+ * Format d'un enregistrement: longueur (int, 0 en fin de segment), CRC32 du
+ * contenu (int), puis le contenu: type (octet) et champs du type. Les dates
+ * sont des horodatages (long, voir Timestamps). Les chaînes sont codées comme
+ * dans TextArena, sans perte, précédées de leur longueur en octets (int),
+ * négative si elles sont codées sur deux octets par caractère.
+ *
+ * Un seul journal peut être ouvert à la fois, avant la création du premier
+ * User: le journal doit décrire le réseau entier pour pouvoir le recréer.
+ * Il peut aussi être ouvert juste après la relecture d'un instantané (voir
+ * Snapshot.read(Path)): celui-ci enregistre la position du journal à laquelle
+ * il a été écrit, et seuls les enregistrements suivants sont rejoués.
+ * checkpoint(Path) écrit un tel instantané et supprime les segments qu'il
+ * rend inutiles, ce qui borne la taille du journal et la durée de sa
+ * relecture.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class Journal implements Closeable {
+	/**
+	 * Taille par défaut d'un segment, en octets.
+	 */
+	public static final int SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * Délai maximal, en millisecondes, entre l'ajout d'un enregistrement et son
+	 * écriture sur disque.
+	 */
+	public static final long COMMIT_INTERVAL_MILLIS = 10;
+
+	private static final byte USER = 1;
+	private static final byte POST = 2;
+	private static final byte LIKE = 3;
+	private static final byte SUBSCRIBE = 4;
+	private static final byte UNSUBSCRIBE = 5;
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Position (voir position()) d'un instantané écrit sans journal ouvert.
+	 */
+	static final long NO_JOURNAL = -1;
+
+	private static volatile Journal active;
+	// Position du journal et nombre de User de l'instantané relu, à partir
+	// desquels le journal est rejoué (voir restoredFrom(long, int))
+	private static long basePosition = 0;
+	private static int baseUserNb = 0;
+
+	private final Path dir;
+	private final int segmentSize;
+	private final CRC32 crc = new CRC32();
+	// Enregistrements codés par les appelants, dans l'ordre de leur ajout, et
+	// leur nombre, compté avant l'ajout à la file
+	private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicLong enqueued = new AtomicLong();
+	// Sous writeLock: segment courant, position jusqu'où il est écrit sur disque,
+	// enregistrements retirés de la file mais pas encore copiés, nombre
+	// d'enregistrements copiés
+	private final Object writeLock = new Object();
+	private int segment;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int forced;
+	private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+	private long written;
+	// Nombre d'enregistrements écrits sur disque; sous le verrou de ce journal:
+	// appelants de flush() en attente
+	private volatile long durable;
+	private volatile boolean closed;
+	private final TreeMap<Long, CompletableFuture<Void>> waiting = new TreeMap<>();
+	private Thread committer;
+
+	private Journal(Path dir, int segmentSize) {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Ouvre le journal du répertoire spécifié, créé s'il n'existe pas, avec des
+	 * segments de SEGMENT_SIZE octets. Les enregistrements existants sont
+	 * rejoués, puis toutes les modifications ultérieures du réseau sont
+	 * journalisées jusqu'à close().
+	 *
+	 * @param dir le répertoire des segments du journal
+	 *
+	 * @return le journal ouvert
+	 *
+	 * @throws IOException           si les segments ne peuvent être lus ou créés
+	 * @throws IllegalStateException si un journal est déjà ouvert, si des User ont
+	 *                               été créés hors du journal et de l'instantané
+	 *                               relu ou si le journal est incohérent
+	 *
+	 * @requires dir != null;
+	 * @ensures \result != null;
+	 */
+	public static Journal open(Path dir) throws IOException {
+		return open(dir, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Ouvre le journal du répertoire spécifié avec des segments de segmentSize
+	 * octets (voir open(Path)).
+	 *
+	 * @requires dir != null && segmentSize > HEADER_SIZE;
+	 */
+	static synchronized Journal open(Path dir, int segmentSize) throws IOException {
+		if (active != null) {
+			throw new IllegalStateException("Un journal est déjà ouvert: " + active.dir);
+		}
+		Files.createDirectories(dir);
+		Journal journal = new Journal(dir, segmentSize);
+		journal.recover();
+		journal.committer = new Thread(journal::commitLoop, "journal-commit-" + dir.getFileName());
+		journal.committer.setDaemon(true);
+		journal.committer.start();
+		active = journal;
+		return journal;
+	}
+
+	/**
+	 * Écrit sur disque, depuis le thread appelant, tous les enregistrements
+	 * ajoutés à ce journal avant l'appel.
+	 *
+	 * @throws UncheckedIOException si l'écriture échoue
+	 */
+	public void sync() {
+		synchronized (writeLock) {
+			if (buffer != null) {
+				commit();
+			}
+		}
+		synchronized (this) {
+			completeUpTo(durable, null);
+		}
+	}
+
+	/**
+	 * Renvoie un CompletableFuture complété lorsque tous les enregistrements
+	 * ajoutés à ce journal avant l'appel sont écrits sur disque, par la prochaine
+	 * écriture groupée, ou complété exceptionnellement par l'UncheckedIOException
+	 * de cette écriture si elle échoue. Le CompletableFuture est complété par le
+	 * thread d'écriture: les traitements longs qui en dépendent doivent être
+	 * exécutés par un autre Executor (voir CompletableFuture.thenRunAsync).
+	 *
+	 * @return un CompletableFuture complété lorsque les enregistrements actuels
+	 *         sont durables
+	 *
+	 * @ensures \result != null;
+	 */
+	public CompletableFuture<Void> flush() {
+		long target = enqueued.get();
+		synchronized (this) {
+			if (closed || durable >= target) {
+				return CompletableFuture.completedFuture(null);
+			}
+			CompletableFuture<Void> f = waiting.computeIfAbsent(target, n -> new CompletableFuture<>());
+			notifyAll();
+			return f;
+		}
+	}
+
+	/**
+	 * Écrit sur disque tous les enregistrements de ce journal et le ferme: les
+	 * modifications ultérieures du réseau ne sont plus journalisées.
+	 *
+	 * @throws IOException si l'écriture échoue; le journal est tout de même fermé
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (Journal.class) {
+			if (active != this) {
+				return;
+			}
+			active = null;
+		}
+		try {
+			synchronized (writeLock) {
+				try {
+					commit();
+				} finally {
+					closed = true;
+					channel.close();
+					buffer = null;
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			synchronized (this) {
+				completeUpTo(durable, null);
+				completeUpTo(Long.MAX_VALUE, new UncheckedIOException(new IOException("Journal fermé: " + dir)));
+				// Termine le thread d'écriture
+				notifyAll();
+			}
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Enregistre le réseau entier dans l'instantané spécifié (voir
+	 * Snapshot.write(Path)), puis supprime les segments de ce journal antérieurs à
+	 * cet instantané: à la prochaine ouverture, après Snapshot.read(Path), seuls
+	 * les enregistrements postérieurs à l'instantané sont rejoués. Les
+	 * enregistrements suivants sont ajoutés à un nouveau segment.
+	 *
+	 * @param file le fichier de l'instantané, remplacé s'il existe
+	 *
+	 * @throws IOException           si l'instantané ne peut être écrit ou les
+	 *                               segments supprimés
+	 * @throws IllegalStateException si ce journal est fermé
+	 *
+	 * @requires file != null;
+	 * @requires aucune modification concurrente du réseau;
+	 */
+	public void checkpoint(Path file) throws IOException {
+		int first;
+		synchronized (writeLock) {
+			if (buffer == null) {
+				throw new IllegalStateException("Journal fermé: " + dir);
+			}
+			try {
+				commit();
+				if (buffer.position() > 0) {
+					roll(segmentSize);
+				}
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			first = segment;
+		}
+		Snapshot.write(file);
+		// L'instantané, renommé une fois écrit sur disque, remplace les segments
+		// précédents
+		int k = first - 1;
+		while (k >= 0 && Files.deleteIfExists(segmentPath(k))) {
+			k--;
+		}
+	}
+
+	/**
+	 * Renvoie true si un journal est ouvert.
+	 */
+	static boolean isOpen() {
+		return active != null;
+	}
+
+	/**
+	 * Renvoie la position de la fin du journal ouvert, après avoir écrit sur
+	 * disque ses enregistrements: numéro du segment dans les 32 bits de poids
+	 * fort, position dans ce segment dans les autres; NO_JOURNAL si aucun journal
+	 * n'est ouvert.
+	 *
+	 * @requires aucune modification concurrente du réseau;
+	 */
+	static long position() {
+		Journal journal = active;
+		if (journal == null) {
+			return NO_JOURNAL;
+		}
+		synchronized (journal.writeLock) {
+			journal.sync();
+			return (long) journal.segment << 32 | journal.buffer.position();
+		}
+	}
+
+	/**
+	 * Enregistre que le réseau a été recréé par un instantané de userNb User,
+	 * écrit à la position spécifiée du journal (voir position()): le prochain
+	 * journal ouvert ne rejouera que les enregistrements suivants.
+	 *
+	 * @requires position == NO_JOURNAL || position >= 0;
+	 * @requires userNb == UserRegistry.size();
+	 */
+	static synchronized void restoredFrom(long position, int userNb) {
+		basePosition = position;
+		baseUserNb = userNb;
+	}
+
+	/**
+	 * Journalise la création du User d'identifiant, de nom, de mot de passe et
+	 * d'horodatage d'inscription spécifiés. Appelée par UserRegistry au moment
+	 * où l'identifiant est réservé, avant la construction du User: les User sont
+	 * journalisés dans l'ordre de leurs identifiants.
+	 */
+	static void userCreated(int id, String userName, String password, long registrationDate) {
+		Journal journal = active;
+		if (journal != null) {
+			journal.logUser(id, userName, password, registrationDate);
+		}
+	}
+
+	/**
+	 * Journalise la création du Post spécifié par le User spécifié.
+	 */
+	static void postAdded(User author, Post p) {
+		Journal journal = active;
+		if (journal != null) {
+			journal.logPost(author, p);
+		}
+	}
+
+	/**
+	 * Journalise le "like" du Post spécifié par le User spécifié. Les Post qui
+	 * n'ont pas été créés par User.addPost(String) ne sont pas journalisés.
+	 */
+	static void likeAdded(User liker, Post p) {
+		Journal journal = active;
+		if (journal != null && p.getAuthor() != null) {
+			journal.logLike(liker, p);
+		}
+	}
+
+	/**
+	 * Journalise l'abonnement (subscribed true) ou le désabonnement du premier
+	 * User spécifié au second.
+	 */
+	static void subscriptionChanged(User follower, User followee, boolean subscribed) {
+		Journal journal = active;
+		if (journal != null) {
+			journal.logSubscription(follower, followee, subscribed);
+		}
+	}
+
+	private void logUser(int id, String userName, String password, long registrationDate) {
+		byte[] name = TextArena.encode(userName);
+		byte[] secret = TextArena.encode(password);
+		ByteBuffer r = record(USER, 20 + name.length + secret.length);
+		r.putInt(id);
+		r.putLong(registrationDate);
+		TextArena.write(r, userName, name);
+		TextArena.write(r, password, secret);
+		append(r);
+	}
+
+	private void logPost(User author, Post p) {
+		String message = p.getText();
+		byte[] text = TextArena.encode(message);
+		ByteBuffer r = record(POST, 20 + text.length);
+		r.putInt(author.getId());
+		r.putInt(p.getPosition());
+		r.putLong(p.getTimestamp());
+		TextArena.write(r, message, text);
+		append(r);
+	}
+
+	private void logLike(User liker, Post p) {
+		ByteBuffer r = record(LIKE, 12);
+		r.putInt(liker.getId());
+		r.putInt(p.getAuthor().getId());
+		r.putInt(p.getPosition());
+		append(r);
+	}
+
+	private void logSubscription(User follower, User followee, boolean subscribed) {
+		ByteBuffer r = record(subscribed ? SUBSCRIBE : UNSUBSCRIBE, 8);
+		r.putInt(follower.getId());
+		r.putInt(followee.getId());
+		append(r);
+	}
+
+	/**
+	 * Renvoie un enregistrement de type et de taille de contenu spécifiés, placé
+	 * où écrire ses champs.
+	 */
+	private static ByteBuffer record(byte type, int fieldsSize) {
+		ByteBuffer r = ByteBuffer.allocate(HEADER_SIZE + 1 + fieldsSize);
+		r.position(HEADER_SIZE);
+		r.put(type);
+		return r;
+	}
+
+	/**
+	 * Complète l'en-tête de l'enregistrement spécifié, dont tous les champs sont
+	 * écrits, et l'ajoute à la file du thread d'écriture. L'enregistrement est
+	 * compté avant son ajout: un appelant de flush() qui le compte attend aussi
+	 * les enregistrements qui le précèdent dans la file.
+	 */
+	private void append(ByteBuffer r) {
+		int length = r.capacity() - HEADER_SIZE;
+		CRC32 checksum = new CRC32();
+		checksum.update(r.array(), HEADER_SIZE, length);
+		r.putInt(0, length).putInt(4, (int) checksum.getValue());
+		enqueued.incrementAndGet();
+		queue.offer(r.array());
+	}
+
+	/**
+	 * Copie dans les segments les enregistrements de la file, en passant au
+	 * segment suivant quand le segment courant est plein, et les écrit sur
+	 * disque. Appelée sous writeLock. Si l'écriture échoue, les enregistrements
+	 * non copiés restent en attente et seront copiés par l'appel suivant.
+	 *
+	 * @throws UncheckedIOException si l'écriture échoue
+	 */
+	private void commit() {
+		for (byte[] r = queue.poll(); r != null; r = queue.poll()) {
+			pending.add(r);
+		}
+		for (byte[] r = pending.peek(); r != null; r = pending.peek()) {
+			if (buffer.remaining() < r.length) {
+				try {
+					roll(Math.max(segmentSize, r.length));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			buffer.put(r);
+			pending.poll();
+			written++;
+		}
+		int end = buffer.position();
+		if (end > forced) {
+			buffer.force(forced, end - forced);
+			forced = end;
+		}
+		durable = written;
+	}
+
+	/**
+	 * Boucle du thread d'écriture: attend un appelant de flush() ou l'expiration
+	 * de COMMIT_INTERVAL_MILLIS, puis copie et écrit sur disque les
+	 * enregistrements ajoutés depuis l'écriture précédente; les appelants
+	 * continuent d'ajouter les leurs à la file pendant l'écriture, qui forment le
+	 * groupe suivant.
+	 */
+	private void commitLoop() {
+		while (true) {
+			synchronized (this) {
+				try {
+					if (!closed && waiting.isEmpty()) {
+						wait(COMMIT_INTERVAL_MILLIS);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (closed) {
+					return;
+				}
+			}
+			UncheckedIOException failure = null;
+			synchronized (writeLock) {
+				if (closed) {
+					return;
+				}
+				if (durable == enqueued.get()) {
+					continue;
+				}
+				try {
+					commit();
+				} catch (UncheckedIOException e) {
+					failure = e;
+				}
+			}
+			synchronized (this) {
+				completeUpTo(durable, null);
+				if (failure != null) {
+					// Les enregistrements en attente seront réécrits avec le groupe suivant
+					completeUpTo(Long.MAX_VALUE, failure);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Complète les CompletableFuture des appelants de flush() attendant au plus
+	 * target enregistrements: normalement si failure est null, exceptionnellement
+	 * sinon. Appelée sous le verrou de ce journal.
+	 */
+	private void completeUpTo(long target, UncheckedIOException failure) {
+		SortedMap<Long, CompletableFuture<Void>> done = waiting.headMap(target, true);
+		for (CompletableFuture<Void> f : done.values()) {
+			if (failure == null) {
+				f.complete(null);
+			} else {
+				f.completeExceptionally(failure);
+			}
+		}
+		done.clear();
+	}
+
+	/**
+	 * Écrit sur disque le segment courant et passe au segment suivant, de la
+	 * taille spécifiée. Appelée sous writeLock. Si le segment suivant ne peut être
+	 * créé, le segment courant reste le segment courant.
+	 */
+	private void roll(int size) throws IOException {
+		buffer.force();
+		forced = buffer.position();
+		durable = written;
+		createSegment(segment + 1, size);
+	}
+
+	private void createSegment(int index, int size) throws IOException {
+		FileChannel next = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer mapped;
+		try {
+			mapped = next.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			next.close();
+			Files.deleteIfExists(segmentPath(index));
+			throw e;
+		}
+		if (channel != null) {
+			channel.close();
+		}
+		segment = index;
+		channel = next;
+		buffer = mapped;
+		// Les segments précédents ont été écrits sur disque
+		forced = 0;
+	}
+
+	private Path segmentPath(int index) {
+		return dir.resolve(String.format("journal-%08d.seg", index));
+	}
+
+	/**
+	 * Rejoue les segments existants à partir de la position de l'instantané relu,
+	 * s'il y en a un, et se place à la fin du dernier enregistrement valide.
+	 */
+	private void recover() throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (Stream<Path> files = Files.list(dir)) {
+			files.filter(f -> f.getFileName().toString().matches("journal-\\d{8}\\.seg")).sorted()
+					.forEach(segments::add);
+		}
+		if (basePosition == NO_JOURNAL && !segments.isEmpty()) {
+			throw new IllegalStateException("Instantané relu écrit sans ce journal: " + dir);
+		}
+		int first = basePosition == NO_JOURNAL ? 0 : (int) (basePosition >>> 32);
+		int offset = basePosition == NO_JOURNAL ? 0 : (int) basePosition;
+		// Segments antérieurs à l'instantané, qu'un checkpoint interrompu n'a pas
+		// supprimés
+		while (!segments.isEmpty() && segments.get(0).compareTo(segmentPath(first)) < 0) {
+			Files.delete(segments.remove(0));
+		}
+		if (offset > 0 && (segments.isEmpty() || !segments.get(0).equals(segmentPath(first)))) {
+			throw new IllegalStateException("Segment manquant: " + segmentPath(first));
+		}
+		int userNb = baseUserNb;
+		for (int k = 0; k < segments.size(); k++) {
+			if (!segments.get(k).equals(segmentPath(first + k))) {
+				throw new IllegalStateException("Segment manquant: " + segmentPath(first + k));
+			}
+			FileChannel ch = FileChannel.open(segments.get(k), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+			if (k == 0) {
+				if (offset > buf.limit()) {
+					throw new IllegalStateException("Segment " + segmentPath(first) + " plus court que l'instantané");
+				}
+				buf.position(offset);
+			}
+			int[] users = { userNb };
+			boolean clean = replay(buf, users);
+			userNb = users[0];
+			if (!clean || k == segments.size() - 1) {
+				// Fin du journal: la suite du segment, qui peut contenir un enregistrement
+				// incomplet, est effacée et les segments suivants supprimés
+				byte[] zeros = new byte[Math.min(1 << 16, buf.remaining())];
+				for (int i = buf.position(); i < buf.limit(); i += zeros.length) {
+					buf.put(i, zeros, 0, Math.min(zeros.length, buf.limit() - i));
+				}
+				for (int i = k + 1; i < segments.size(); i++) {
+					Files.delete(segments.get(i));
+				}
+				segment = first + k;
+				channel = ch;
+				buffer = buf;
+				break;
+			}
+			ch.close();
+		}
+		if (UserRegistry.size() != userNb) {
+			throw new IllegalStateException("User créés hors du journal: " + UserRegistry.size() + " User, "
+					+ userNb + " journalisés ou relus");
+		}
+		if (buffer == null) {
+			createSegment(first, segmentSize);
+		}
+		forced = buffer.position();
+	}
+
+	/**
+	 * Rejoue les enregistrements du segment spécifié jusqu'à sa fin et renvoie
+	 * true, ou jusqu'au premier enregistrement invalide et renvoie false; le
+	 * tampon est alors placé au début de cet enregistrement.
+	 */
+	private boolean replay(MappedByteBuffer buf, int[] userNb) {
+		while (buf.remaining() >= HEADER_SIZE) {
+			int start = buf.position();
+			int length = buf.getInt();
+			if (length == 0) {
+				buf.position(start);
+				return true;
+			}
+			int checksum = buf.getInt();
+			if (length < 0 || length > buf.remaining()) {
+				buf.position(start);
+				return false;
+			}
+			ByteBuffer r = buf.slice(buf.position(), length);
+			crc.reset();
+			crc.update(r.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				buf.position(start);
+				return false;
+			}
+			apply(r, userNb);
+			buf.position(buf.position() + length);
+		}
+		return true;
+	}
+
+	/**
+	 * Rejoue l'enregistrement spécifié.
+	 */
+	private static void apply(ByteBuffer r, int[] userNb) {
+		byte type = r.get();
+		switch (type) {
+		case USER: {
+			int id = r.getInt();
+			long date = r.getLong();
+			String name = TextArena.read(r);
+			String password = TextArena.read(r);
+			if (id != UserRegistry.size()) {
+				throw new IllegalStateException("User " + id + " rejoué avec l'identifiant " + UserRegistry.size());
+			}
+			Timestamps.observe(date);
+			new User(name, password, date);
+			userNb[0]++;
+			break;
+		}
+		case POST: {
+			User author = user(r.getInt());
+			int position = r.getInt();
+			long date = r.getLong();
+			String text = TextArena.read(r);
+			if (position != author.getPostNb()) {
+				throw new IllegalStateException("Post " + position + " de " + author.getId() + " rejoué en position "
+						+ author.getPostNb());
+			}
+			// Les Post créés après la relecture restent postérieurs aux Post rejoués
+			Timestamps.observe(date);
+			author.publish(text, date);
+			break;
+		}
+		case LIKE: {
+			User liker = user(r.getInt());
+			User author = user(r.getInt());
+			int position = r.getInt();
+			if (position < 0 || position >= author.getPostNb()) {
+				throw new IllegalStateException("Post " + position + " de " + author.getId() + " inconnu");
+			}
+			author.getPostLog().get(position).addLikeFrom(liker);
+			break;
+		}
+		case SUBSCRIBE:
+			user(r.getInt()).addSubscription(user(r.getInt()));
+			break;
+		case UNSUBSCRIBE:
+			user(r.getInt()).removeSubscription(user(r.getInt()));
+			break;
+		default:
+			throw new IllegalStateException("Enregistrement de type inconnu: " + type);
+		}
+	}
+
+	private static User user(int id) {
+		User u = UserRegistry.get(id);
+		if (u == null) {
+			throw new IllegalStateException("User " + id + " inconnu");
+		}
+		return u;
+	}
+
+}
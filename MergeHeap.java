@@ -0,0 +1,162 @@
+package sociald1;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Tas binaire indexé utilisé par NewsFeed pour fusionner les Post de plusieurs
+ * sources (une source par auteur).
+ *
+ * Les éléments du tas sont des numéros de source compris entre 0 et
+ * capacity() - 1. L'ordre est donné par un IntBinaryOperator qui compare deux
+ * numéros de source; cet ordre peut changer lorsque le curseur d'une source
+ * avance, il faut alors appeler update() pour rétablir la propriété de tas.
+ * Chaque opération coûte O(log k) pour k sources présentes dans le tas.
+ *
+ * @invariant size() >= 0 && size() <= capacity();
+ * @invariant isEmpty() <==> size() == 0;
+ * @invariant !isEmpty() ==> contains(peek());
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+class MergeHeap {
+	private final IntBinaryOperator order;
+	private int[] heap;
+	private int[] pos;
+	private int size;
+
+	/**
+	 * Initialise un tas vide pouvant contenir les sources 0 à capacity - 1.
+	 *
+	 * @param capacity nombre de sources
+	 * @param order    comparaison de deux sources; la source minimale est en tête
+	 *
+	 * @requires capacity >= 0;
+	 * @requires order != null;
+	 * @ensures isEmpty();
+	 */
+	MergeHeap(int capacity, IntBinaryOperator order) {
+		this.order = order;
+		this.heap = new int[capacity];
+		this.pos = new int[capacity];
+		Arrays.fill(this.pos, -1);
+		this.size = 0;
+	}
+
+	int capacity() {
+		return pos.length;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean contains(int source) {
+		return pos[source] >= 0;
+	}
+
+	/**
+	 * Renvoie la source minimale sans la retirer.
+	 *
+	 * @requires !isEmpty();
+	 * @pure
+	 */
+	int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Ajoute la source spécifiée au tas.
+	 *
+	 * @requires !contains(source);
+	 * @ensures contains(source);
+	 */
+	void add(int source) {
+		heap[size] = source;
+		pos[source] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Retire la source spécifiée du tas si elle y est présente.
+	 *
+	 * @ensures !contains(source);
+	 */
+	void remove(int source) {
+		int i = pos[source];
+		if (i < 0) {
+			return;
+		}
+		size--;
+		pos[source] = -1;
+		if (i != size) {
+			heap[i] = heap[size];
+			pos[heap[i]] = i;
+			siftDown(i);
+			siftUp(i);
+		}
+	}
+
+	/**
+	 * Replace la source spécifiée après une modification de sa clé.
+	 *
+	 * @requires contains(source);
+	 */
+	void update(int source) {
+		int i = pos[source];
+		siftDown(i);
+		siftUp(pos[source]);
+	}
+
+	/**
+	 * Vide le tas.
+	 *
+	 * @ensures isEmpty();
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			pos[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int source = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (order.applyAsInt(source, heap[parent]) >= 0) {
+				break;
+			}
+			heap[i] = heap[parent];
+			pos[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = source;
+		pos[source] = i;
+	}
+
+	private void siftDown(int i) {
+		int source = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && order.applyAsInt(heap[child + 1], heap[child]) < 0) {
+				child++;
+			}
+			if (order.applyAsInt(source, heap[child]) <= 0) {
+				break;
+			}
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = source;
+		pos[source] = i;
+	}
+}
@@ -3,6 +3,11 @@
  */
 package sociald1;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * @author Mamadou NDIAYE 12109680
  * Je déclare qu'il s'agit de mon propre travail
@@ -18,11 +23,26 @@ package sociald1;
  * récents.
  * 
  * Chaque itération utilise les méthodes d'itération des User concernés par ce
- * NewsFeed. Lorsqu'une itération a été initié par un appel à la méthode
- * startIteration() ou au constructeur, aucun des utilisateurs ne doit poster de
- * nouveaux messages. Si cette condition n'est pas respectée les résultats
- * obtenus sont imprévisibles. Cependant, un nouvel appel à startIteration()
- * permet de rétablir un fonctionnement normal pour une nouvelle itération.
+ * NewsFeed. Une itération parcourt un instantané du fil d'actualité pris par
+ * startIteration() ou par le constructeur, sans copier les listes de Post: les
+ * Post ajoutés ensuite par les utilisateurs ne sont pas parcourus et ne
+ * modifient pas les index de l'itération, qui reste donc correcte même si des
+ * utilisateurs postent pendant qu'elle se déroule. Un nouvel appel à
+ * startIteration() permet d'inclure ces nouveaux Post dans une nouvelle
+ * itération. Tant qu'aucun Post n'a été ajouté depuis le démarrage de
+ * l'itération, size() est le nombre de Post de l'instantané; dans le cas
+ * contraire, hasNext() est false dès que tous les Post de l'instantané ont été
+ * parcourus.
+ * 
+ * Les Post des différents auteurs sont fusionnés par un FeedCursor, en
+ * O(log k) par appel à next() ou previous() pour k auteurs suivis, et en lisant
+ * séquentiellement le fil matérialisé de getUser() s'il existe (voir
+ * User.enableTimeline(int)).
+ * 
+ * La méthode cursor() renvoie au contraire un PostCursor portant sa propre
+ * position et celle de chaque auteur: de nombreux PostCursor peuvent ainsi
+ * parcourir en même temps les fils d'actualité de User ayant des abonnements
+ * communs, sans interférer entre eux ni avec les itérations de NewsFeed.
  * 
  * @invariant getUser() != null;
  * @invariant size() == getUser().getPostNb() + (\sum User u;
@@ -45,10 +65,7 @@ package sociald1;
 public class NewsFeed {
 	// À compléter
 	private User user;
-    private int previousIdx;
-    private int nextIdx;
-    private int lastIdx;
-    private User lastUser;
+	private FeedCursor iteration;
 
 	/**
 	 * Initialise un nouveau NewsFeed pour l'utilisateur spécifié. Le NewsFeed est
@@ -101,11 +118,274 @@ public class NewsFeed {
 	 */
 	public void startIteration() {
 		// À compléter
-		this.previousIdx = -1;
-        this.nextIdx = 0;
-        this.lastIdx = -1;
-        this.lastUser = null;
-        user.startIteration();
+		this.iteration = new FeedCursor(user, true);
+	}
+
+	/**
+	 * Renvoie un nouveau curseur sur le fil d'actualité de getUser(), placé avant
+	 * le Post le plus récent. Ce curseur porte sa propre position: il est
+	 * indépendant de l'itération de ce NewsFeed, des méthodes d'itération des User
+	 * et des autres curseurs. Il parcourt les Post existant à sa création.
+	 * 
+	 * @return un nouveau curseur sur le fil d'actualité de getUser()
+	 * 
+	 * @ensures \result != null;
+	 * @ensures \result.nextIndex() == 0;
+	 * @ensures \result.lastIndex() == -1;
+	 * @ensures \result.hasNext() <==> size() > 0;
+	 * 
+	 * @pure
+	 */
+	public PostCursor cursor() {
+		return new FeedCursor(user, false);
+	}
+
+	/**
+	 * Renvoie un nouveau curseur sur les Post du fil d'actualité de getUser() dont
+	 * la date est comprise entre from (incluse) et to (exclue), placé avant le
+	 * plus récent d'entre eux. Les bornes de la tranche de chaque auteur sont
+	 * trouvées par recherche dichotomique et seules ces tranches sont fusionnées:
+	 * le coût ne dépend pas du nombre de Post hors de l'intervalle. Comme
+	 * cursor(), ce curseur est indépendant de toute autre itération et parcourt
+	 * les Post existant à sa création.
+	 * 
+	 * @param from la date du plus ancien Post possible (incluse)
+	 * @param to   la date au-delà de laquelle les Post sont exclus
+	 * 
+	 * @return un nouveau curseur sur les Post du fil dont la date est dans
+	 *         [from, to[
+	 * 
+	 * @requires from != null && to != null;
+	 * @ensures \result != null;
+	 * @ensures \result.nextIndex() == 0;
+	 * @ensures \result.lastIndex() == -1;
+	 * 
+	 * @pure
+	 */
+	public PostCursor cursor(Instant from, Instant to) {
+		return new FeedCursor(user, from, to);
+	}
+
+	/**
+	 * Renvoie une page d'au plus limit Post du fil d'actualité du User spécifié,
+	 * commençant immédiatement après le Post désigné par le jeton spécifié, ou au
+	 * Post le plus récent si ce jeton est null.
+	 * 
+	 * Les Post sont ordonnés par date décroissante puis, à date égale, par
+	 * identifiant d'auteur croissant. La position de chaque auteur est retrouvée
+	 * par recherche dichotomique sur la date du jeton, puis les Post sont
+	 * fusionnés à l'aide d'un tas: une page coûte O(k log n + limit log k) pour k
+	 * auteurs ayant au plus n Post, quel que soit son rang dans le fil. Aucun état
+	 * n'est conservé entre deux pages, et les Post ajoutés entre-temps n'affectent
+	 * ni ne décalent les pages suivantes.
+	 * 
+	 * @param aUser le User dont le fil d'actualité est parcouru
+	 * @param after le jeton de la page précédente, ou null pour la première page
+	 * @param limit le nombre maximal de Post de la page
+	 * 
+	 * @return la page demandée
+	 * 
+	 * @requires aUser != null;
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 * @ensures \result.hasMore() ==> \result.getPosts().size() == limit;
+	 * @ensures (\forall Post p; \result.getPosts().contains(p);
+	 *          after == null || !p.getDate().isAfter(after.getDate()));
+	 */
+	public static FeedPage page(User aUser, PageToken after, int limit) {
+		IdBitmap subscriptions = aUser.getSubscriptionIds();
+		int k = subscriptions.cardinality() + 1;
+		User[] authors = new User[k];
+		authors[0] = aUser;
+		int[] n = { 1 };
+		subscriptions.forEach(id -> authors[n[0]++] = UserRegistry.get(id));
+		PostLog[] logs = new PostLog[k];
+		// Nombre de Post de chaque auteur restant à parcourir après le jeton
+		int[] remaining = new int[k];
+		for (int a = 0; a < k; a++) {
+			logs[a] = authors[a].getPostLog();
+			int size = authors[a].getPublishedNb();
+			if (after == null) {
+				remaining[a] = size;
+			} else if (authors[a].getId() == after.getAuthorId()) {
+				remaining[a] = Math.min(after.getPosition(), size);
+			} else {
+				remaining[a] = logs[a].rank(after.getTimestamp(), authors[a].getId() > after.getAuthorId(), size);
+			}
+		}
+		MergeHeap heap = new MergeHeap(k, (a, b) -> {
+			Post p = logs[a].get(remaining[a] - 1);
+			Post q = logs[b].get(remaining[b] - 1);
+			int cmp = Long.compare(q.getTimestamp(), p.getTimestamp());
+			return cmp != 0 ? cmp : Integer.compare(authors[a].getId(), authors[b].getId());
+		});
+		for (int a = 0; a < k; a++) {
+			if (remaining[a] > 0) {
+				heap.add(a);
+			}
+		}
+		ArrayList<Post> posts = new ArrayList<>(Math.min(limit, 1024));
+		ArrayList<User> postAuthors = new ArrayList<>(Math.min(limit, 1024));
+		PageToken next = null;
+		while (posts.size() < limit && !heap.isEmpty()) {
+			int a = heap.peek();
+			int pos = --remaining[a];
+			Post p = logs[a].get(pos);
+			posts.add(p);
+			postAuthors.add(authors[a]);
+			next = new PageToken(p.getTimestamp(), authors[a].getId(), pos);
+			if (remaining[a] > 0) {
+				heap.update(a);
+			} else {
+				heap.remove(a);
+			}
+		}
+		return new FeedPage(posts, postAuthors, next, !heap.isEmpty());
+	}
+
+	/**
+	 * Renvoie les k Post de ce fil d'actualité datés de since ou après qui ont le
+	 * plus de "likes", du plus "liké" au moins "liké" puis, à nombre de "likes"
+	 * égal, du plus récent au plus ancien.
+	 * 
+	 * Les Post sont sélectionnés au fil du parcours à l'aide d'un tas borné à k
+	 * éléments, dont la racine est le moins bon Post retenu. Les auteurs sont
+	 * parcourus par majorant décroissant du nombre de "likes" de leurs Post (voir
+	 * User.getMaxPostLikeNb()): dès que ce majorant est inférieur au nombre de
+	 * "likes" de la racine d'un tas plein, aucun des auteurs restants ne peut
+	 * plus fournir de Post et le parcours s'arrête. Le premier Post de chaque
+	 * auteur est trouvé par recherche dichotomique sur since: la sélection coûte
+	 * O(a log a + n log k) pour a auteurs et n Post parcourus, en O(a + k)
+	 * mémoire.
+	 * 
+	 * @param k     le nombre maximal de Post renvoyés
+	 * @param since la date du plus ancien Post pouvant être renvoyé
+	 * 
+	 * @return les k Post les plus "likés" depuis since
+	 * 
+	 * @requires k >= 0;
+	 * @requires since != null;
+	 * @ensures \result != null && \result.size() <= k;
+	 * @ensures (\forall Post p; \result.contains(p); !p.getDate().isBefore(since));
+	 * @ensures (\forall int i; i >= 1 && i < \result.size();
+	 *          \result.get(i).getLikeNumber() <= \result.get(i - 1).getLikeNumber());
+	 * 
+	 * @pure
+	 */
+	public List<Post> topLiked(int k, Instant since) {
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+		IdBitmap subscriptions = user.getSubscriptionIds();
+		User[] authors = new User[subscriptions.cardinality() + 1];
+		authors[0] = user;
+		int[] n = { 1 };
+		subscriptions.forEach(id -> {
+			if (n[0] < authors.length) {
+				authors[n[0]++] = UserRegistry.get(id);
+			}
+		});
+		// Majorants lus une fois: (~majorant, auteur) trié par ordre croissant
+		long[] order = new long[n[0]];
+		for (int a = 0; a < n[0]; a++) {
+			order[a] = ((long) ~authors[a].getMaxPostLikeNb() << 32) | a;
+		}
+		Arrays.sort(order);
+
+		Post[] top = new Post[k];
+		int[] likes = new int[k];
+		MergeHeap heap = new MergeHeap(k, (s, t) -> {
+			int cmp = Integer.compare(likes[s], likes[t]);
+			return cmp != 0 ? cmp : Long.compare(top[s].getTimestamp(), top[t].getTimestamp());
+		});
+		for (long key : order) {
+			int bound = ~(int) (key >> 32);
+			if (heap.size() == k && bound < likes[heap.peek()]) {
+				break;
+			}
+			User author = authors[(int) key];
+			PostLog log = author.getPostLog();
+			int size = author.getPublishedNb();
+			int first = log.rank(Timestamps.of(since), false, size);
+			for (int i = size - 1; i >= first; i--) {
+				Post p = log.get(i);
+				int l = p.getLikeNumber();
+				if (heap.size() < k) {
+					int slot = heap.size();
+					top[slot] = p;
+					likes[slot] = l;
+					heap.add(slot);
+				} else {
+					int slot = heap.peek();
+					if (l > likes[slot] || (l == likes[slot] && p.isAfter(top[slot]))) {
+						top[slot] = p;
+						likes[slot] = l;
+						heap.update(slot);
+					}
+				}
+			}
+		}
+		Post[] result = new Post[heap.size()];
+		for (int i = result.length - 1; i >= 0; i--) {
+			int slot = heap.peek();
+			result[i] = top[slot];
+			heap.remove(slot);
+		}
+		return new ArrayList<>(Arrays.asList(result));
+	}
+
+	/**
+	 * Renvoie au plus limit Post de ce fil d'actualité contenant tous les termes
+	 * de la requête spécifiée, du plus récent au plus ancien (voir PostIndex).
+	 * 
+	 * @param query les termes recherchés
+	 * @param limit le nombre maximal de Post renvoyés
+	 * 
+	 * @return les Post de ce fil contenant tous les termes de query
+	 * 
+	 * @requires query != null;
+	 * @requires limit >= 0;
+	 * @ensures \result != null && \result.size() <= limit;
+	 * @ensures (\forall Post p; \result.contains(p);
+	 *          PostIndex.search(query, Integer.MAX_VALUE).contains(p));
+	 * @ensures (\forall int i; i >= 1 && i < \result.size();
+	 *          !\result.get(i).isAfter(\result.get(i - 1)));
+	 * 
+	 * @pure
+	 */
+	public List<Post> search(String query, int limit) {
+		return PostIndex.search(query, false, this::isAuthor, limit);
+	}
+
+	/**
+	 * Renvoie au plus limit Post de ce fil d'actualité contenant les termes de
+	 * l'expression spécifiée consécutivement et dans cet ordre, du plus récent au
+	 * plus ancien (voir PostIndex).
+	 * 
+	 * @param phrase l'expression recherchée
+	 * @param limit  le nombre maximal de Post renvoyés
+	 * 
+	 * @return les Post de ce fil contenant l'expression phrase
+	 * 
+	 * @requires phrase != null;
+	 * @requires limit >= 0;
+	 * @ensures \result != null && \result.size() <= limit;
+	 * @ensures (\forall Post p; \result.contains(p);
+	 *          PostIndex.searchPhrase(phrase, Integer.MAX_VALUE).contains(p));
+	 * 
+	 * @pure
+	 */
+	public List<Post> searchPhrase(String phrase, int limit) {
+		return PostIndex.search(phrase, true, this::isAuthor, limit);
+	}
+
+	/**
+	 * Renvoie true si le User d'identifiant spécifié est un auteur de ce fil:
+	 * getUser() ou l'un de ses abonnements.
+	 */
+	private boolean isAuthor(int id) {
+		return id == user.getId() || user.getSubscriptionIds().contains(id);
 	}
 
 	/**
@@ -120,7 +400,7 @@ public class NewsFeed {
 	 */
 	public boolean hasPrevious() {
 		// À compléter
-		return user.hasPrevious();
+		return iteration.hasPrevious();
 	}
 
 	/**
@@ -134,7 +414,7 @@ public class NewsFeed {
 	 */
 	public int previousIndex() {
 		// À compléter
-		return this.previousIdx;
+		return iteration.previousIndex();
 	}
 
 	/**
@@ -153,14 +433,10 @@ public class NewsFeed {
 	 */
 	public Post previous() {
 		// À compléter
-		Post post = user.previous();
-        if (post != null) {
-            this.previousIdx--;
-            this.nextIdx--;
-            this.lastIdx = this.previousIdx;
-            this.lastUser = user;
-        }
-        return post;
+		if (hasPrevious()) {
+			return iteration.previous();
+		}
+		return null;
 	}
 
 	/**
@@ -175,7 +451,7 @@ public class NewsFeed {
 	 */
 	public boolean hasNext() {
 		// À compléter
-		return user.hasNext();
+		return iteration.hasNext();
 	}
 
 	/**
@@ -195,14 +471,10 @@ public class NewsFeed {
 	 */
 	public Post next() {
 		// À compléter
-		Post post = user.next();
-        if (post != null) {
-            this.previousIdx++;
-            this.nextIdx++;
-            this.lastIdx = this.nextIdx;
-            this.lastUser = user;
-        }
-        return post;
+		if (hasNext()) {
+			return iteration.next();
+		}
+		return null;
 	}
 
 	/**
@@ -216,7 +488,7 @@ public class NewsFeed {
 	 */
 	public int nextIndex() {
 		// À compléter
-		return this.nextIdx;
+		return iteration.nextIndex();
 	}
 
 	/**
@@ -232,7 +504,7 @@ public class NewsFeed {
 	 */
 	public int lastIndex() {
 		// À compléter
-		return this.lastIdx;
+		return iteration.lastIndex();
 	}
 
 	/**
@@ -249,11 +521,14 @@ public class NewsFeed {
 	 */
 	public User lastUser() {
 		// À compléter
-		return this.lastUser;
+		return iteration.lastUser();
 	}
 
 	/**
-	 * Renvoie le nombre total de Post de ce NewsFeed.
+	 * Renvoie le nombre total de Post de ce NewsFeed. Ce nombre est tenu à jour
+	 * par le User à chaque Post de l'un des auteurs du fil et à chaque abonnement
+	 * ou désabonnement (voir User.addPost(String)): son calcul coûte O(1), quel
+	 * que soit le nombre d'abonnements.
 	 * 
 	 * @return le nombre total de Post de ce NewsFeed
 	 * 
@@ -261,6 +536,6 @@ public class NewsFeed {
 	 */
 	public int size() {
 		// À compléter
-		return user.getPostNb() + user.getSubscriptions().stream().mapToInt(User::getPostNb).sum();
+		return user.getFeedPostNb();
 	}
 }
@@ -0,0 +1,74 @@
+package sociald1.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sociald1.NewsFeed;
+import sociald1.PostCursor;
+
+/**
+ * Benchmarks de NewsFeed: parcours complet d'un fil d'actualité et calcul de
+ * son nombre de Post.
+ *
+ * Les NewsFeed mesurés sont créés à l'avance pour un échantillon de User du
+ * graphe (voir Feeds), afin que le coût de leur construction ne soit pas
+ * compté; chaque appel passe au fil suivant de l'échantillon.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx8g" })
+public class NewsFeedBenchmark {
+	/**
+	 * Échantillon de NewsFeed propre à chaque thread de mesure.
+	 */
+	@State(Scope.Thread)
+	public static class Feeds {
+		private static final int SAMPLE_SIZE = 1024;
+
+		private NewsFeed[] feeds;
+		private int next;
+
+		@Setup(Level.Trial)
+		public void sample(SocialGraph graph) {
+			feeds = new NewsFeed[SAMPLE_SIZE];
+			for (int i = 0; i < SAMPLE_SIZE; i++) {
+				feeds[i] = new NewsFeed(graph.randomUser());
+			}
+		}
+
+		NewsFeed next() {
+			NewsFeed feed = feeds[next];
+			next = (next + 1) % SAMPLE_SIZE;
+			return feed;
+		}
+	}
+
+	@Benchmark
+	public int traverse(Feeds feeds, Blackhole bh) {
+		PostCursor cursor = feeds.next().cursor();
+		int n = 0;
+		while (cursor.hasNext()) {
+			bh.consume(cursor.next());
+			n++;
+		}
+		return n;
+	}
+
+	@Benchmark
+	public int size(Feeds feeds) {
+		return feeds.next().size();
+	}
+}
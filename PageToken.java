@@ -0,0 +1,124 @@
+package sociald1;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+
+/**
+ * Jeton de continuation d'une pagination du fil d'actualité (voir
+ * NewsFeed.page(User, PageToken, int)).
+ *
+ * Un PageToken désigne le dernier Post d'une page par sa clé dans l'ordre du
+ * fil: sa date, l'identifiant de son auteur et sa position dans la liste des
+ * Post de cet auteur. La page suivante commence immédiatement après cette clé,
+ * quels que soient les Post ajoutés entre-temps: un jeton reste valide
+ * indéfiniment et ne mémorise aucun état côté serveur.
+ *
+ * Un PageToken est immuable et opaque pour les clients, qui peuvent le
+ * transmettre sous forme de chaîne de caractères (voir encode() et
+ * decode(String)).
+ *
+ * @invariant decode(encode()).equals(this);
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class PageToken {
+	private final long timestamp;
+	private final int authorId;
+	private final int position;
+
+	/**
+	 * Initialise un jeton désignant le Post d'horodatage (voir Timestamps),
+	 * d'auteur et de position physique spécifiés.
+	 *
+	 * @requires authorId >= 0 && position >= 0;
+	 */
+	PageToken(long timestamp, int authorId, int position) {
+		this.timestamp = timestamp;
+		this.authorId = authorId;
+		this.position = position;
+	}
+
+	long getTimestamp() {
+		return timestamp;
+	}
+
+	int getAuthorId() {
+		return authorId;
+	}
+
+	/**
+	 * Renvoie l'indice physique du Post désigné dans le journal de son auteur
+	 * (voir PostLog).
+	 */
+	int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Renvoie une représentation textuelle de ce jeton, destinée à être
+	 * retransmise telle quelle à decode(String).
+	 *
+	 * @return la représentation textuelle de ce jeton
+	 *
+	 * @ensures \result != null && !\result.isBlank();
+	 *
+	 * @pure
+	 */
+	public String encode() {
+		Instant date = Timestamps.toInstant(timestamp);
+		return Long.toString(date.getEpochSecond(), 36) + '.' + Integer.toString(date.getNano(), 36) + '.'
+				+ Integer.toString(authorId, 36) + '.' + Integer.toString(position, 36);
+	}
+
+	/**
+	 * Renvoie le jeton dont la représentation textuelle est spécifiée.
+	 *
+	 * @param s la représentation textuelle d'un jeton, renvoyée par encode()
+	 *
+	 * @return le jeton correspondant
+	 *
+	 * @throws IllegalArgumentException si s n'est pas la représentation d'un
+	 *                                  jeton
+	 *
+	 * @requires s != null;
+	 * @ensures \result != null;
+	 */
+	public static PageToken decode(String s) {
+		String[] parts = s.split("\\.", -1);
+		if (parts.length != 4) {
+			throw new IllegalArgumentException("Jeton invalide: " + s);
+		}
+		try {
+			long seconds = Long.parseLong(parts[0], 36);
+			int nanos = Integer.parseInt(parts[1], 36);
+			int authorId = Integer.parseInt(parts[2], 36);
+			int position = Integer.parseInt(parts[3], 36);
+			if (nanos < 0 || nanos > 999_999_999 || authorId < 0 || position < 0) {
+				throw new IllegalArgumentException("Jeton invalide: " + s);
+			}
+			return new PageToken(Timestamps.of(Instant.ofEpochSecond(seconds, nanos)), authorId, position);
+		} catch (NumberFormatException | DateTimeException e) {
+			throw new IllegalArgumentException("Jeton invalide: " + s, e);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof PageToken)) {
+			return false;
+		}
+		PageToken t = (PageToken) o;
+		return timestamp == t.timestamp && authorId == t.authorId && position == t.position;
+	}
+
+	@Override
+	public int hashCode() {
+		return (Long.hashCode(timestamp) * 31 + authorId) * 31 + position;
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
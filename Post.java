@@ -1,7 +1,13 @@
 package sociald1;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * @author Mamadou NDIAYE 12109680
@@ -12,6 +18,22 @@ import java.util.HashSet;
  * La seule caractéristque modifiable de cette classe est l'ensemble des
  * utilisteurs ayant "liké" ce Post.
  * 
+ * Les "likers" sont mémorisés par leur identifiant (voir UserRegistry) dans un
+ * IdBitmap, ce qui reste compact pour les Post ayant des centaines de milliers
+ * de "likes" et permet de les croiser rapidement avec d'autres ensembles
+ * d'utilisateurs, par exemple les abonnements d'un User.
+ * 
+ * Les "likes" peuvent être ajoutés par plusieurs threads simultanément. La
+ * plupart des Post n'ayant que quelques "likes", un Post n'alloue son IdBitmap
+ * qu'à son premier "like" et le protège par son propre verrou. Lorsqu'un Post
+ * atteint HOT_LIKES "likes", ses "likers" sont répartis entre LIKER_SHARDS
+ * IdBitmap (par blocs de 64 identifiants consécutifs), chacun protégé par son
+ * propre verrou, et les "likes" suivants sont comptés par un compteur réparti
+ * (LongAdder): deux "likes" concurrents d'un Post populaire ne se bloquent que
+ * s'ils tombent dans le même fragment. getLikeNumber() ne bloque jamais; le
+ * nombre qu'il renvoie pendant des ajouts concurrents peut ne pas encore
+ * compter ceux en cours.
+ * 
  * @invariant getText() != null;
  * @invariant getDate() != null;
  * @invariant getLikers() != null && !getLikers().contains(null);
@@ -21,10 +43,34 @@ import java.util.HashSet;
  * @version 3/10/2023
  */
 public class Post {
+	/**
+	 * Nombre de "likes" à partir duquel l'ensemble des "likers" est fragmenté.
+	 */
+	static final int HOT_LIKES = 1024;
+
+	/**
+	 * Nombre de fragments de l'ensemble des "likers" (puissance de 2).
+	 */
+	static final int LIKER_SHARDS = 16;
+
 		// À compléter
-	private String text;
-    private Instant creationDate;
-    private HashSet<User> likers;
+	// Texte rangé hors du tas: référence dans TextArena et nombre de caractères
+	private final long textRef;
+	private final int textLength;
+    // Horodatage de création (voir Timestamps)
+    private final long creationDate;
+    // "Likers", sous le verrou de ce Post: null avant le premier "like" et après
+    // la fragmentation, les fragments (chacun sous son propre verrou) et le
+    // compteur des "likes" suivants étant alors publiés
+    private IdBitmap likers;
+    private volatile int likeNb;
+    private volatile LongAdder hotLikeNb;
+    private volatile IdBitmap[] shards;
+    private volatile Set<User> likersView;
+    // Auteur à prévenir des "likes" (voir User.getMaxPostLikeNb()), ou null
+    private final User author;
+    // Indice physique dans le journal des Post de l'auteur (voir PostLog), ou -1
+    private final int position;
 
 
 	/**
@@ -41,9 +87,33 @@ public class Post {
 	 */
 	public Post(String text) {
 		// À compléter
-		this.text = text;
-        this.creationDate = Instant.now();
-        this.likers = new HashSet<>();
+		this(text, Timestamps.now(), null, -1);
+	}
+
+	/**
+	 * Initialise un nouveau Post d'horodatage spécifié, rangé à l'indice physique
+	 * spécifié du journal des Post de son auteur. Le nombre de "likes" de ce Post
+	 * est signalé à son auteur à chaque nouveau "like" (voir
+	 * User.getMaxPostLikeNb()). Ce constructeur permet aussi de recréer un Post à
+	 * sa date d'origine (voir Journal).
+	 * 
+	 * @param text     le texte du Post
+	 * @param date     l'horodatage du Post (voir Timestamps)
+	 * @param author   l'auteur du Post, ou null
+	 * @param position l'indice physique du Post chez son auteur, ou -1
+	 * 
+	 * @requires text != null;
+	 * @requires author != null ==> position == author.getPostNb();
+	 * @ensures getText().equals(text);
+	 * @ensures getTimestamp() == date;
+	 * @ensures getLikers().isEmpty();
+	 */
+	Post(String text, long date, User author, int position) {
+		this.textRef = TextArena.append(text);
+		this.textLength = text.length();
+		this.author = author;
+		this.position = position;
+        this.creationDate = date;
 	}
 
 	/**
@@ -55,6 +125,18 @@ public class Post {
 	 */
 	public Instant getDate() {
 		// À compléter
+		return Timestamps.toInstant(this.creationDate);
+	}
+
+	/**
+	 * Renvoie l'horodatage de création de ce Post (voir Timestamps): deux Post
+	 * se comparent par leurs horodatages sans créer d'Instant.
+	 * 
+	 * @ensures Timestamps.toInstant(\result).equals(getDate());
+	 * 
+	 * @pure
+	 */
+	long getTimestamp() {
 		return this.creationDate;
 	}
 
@@ -67,7 +149,24 @@ public class Post {
 	 */
 	public String getText() {
 		// À compléter
-		return this.text;
+		return TextArena.get(this.textRef, this.textLength);
+	}
+
+	/**
+	 * Renvoie une vue en lecture seule du texte de ce Post. Contrairement à
+	 * getText(), qui recopie le texte, rangé hors du tas Java, dans une nouvelle
+	 * String, cette méthode ne copie rien: chaque caractère est lu à la demande
+	 * et la vue ne coûte qu'un objet, quelle que soit la longueur du texte.
+	 * 
+	 * @return une vue du texte de ce Post
+	 * 
+	 * @ensures \result != null;
+	 * @ensures \result.toString().equals(getText());
+	 * 
+	 * @pure
+	 */
+	public CharSequence getTextView() {
+		return new TextArena.View(this.textRef, 0, this.textLength);
 	}
 
 	/**
@@ -82,7 +181,9 @@ public class Post {
 	 */
 	public int getLikeNumber() {
 		// À compléter
-		return this.likers.size();
+		LongAdder hot = this.hotLikeNb;
+		int n = this.likeNb;
+		return hot == null ? n : n + hot.intValue();
 	}
 
 	/**
@@ -97,7 +198,23 @@ public class Post {
 	 */
 	public boolean hasLikeFrom(User u) {
 		// À compléter
-		return likers.contains(u);
+		if (u == null) {
+			return false;
+		}
+		int id = u.getId();
+		IdBitmap[] s = this.shards;
+		if (s == null) {
+			synchronized (this) {
+				s = this.shards;
+				if (s == null) {
+					return this.likers != null && this.likers.contains(id);
+				}
+			}
+		}
+		IdBitmap shard = s[shardOf(id)];
+		synchronized (shard) {
+			return shard.contains(id);
+		}
 	}
 
 	/**
@@ -118,7 +235,17 @@ public class Post {
 	 */
 	public boolean addLikeFrom(User u) {
 		// À compléter
-		return likers.add(u);
+		if (u == null) {
+            return false;
+        }
+        boolean added = addLiker(u.getId());
+        if (added) {
+            Journal.likeAdded(u, this);
+            if (author != null) {
+                author.postLiked(getLikeNumber());
+            }
+        }
+        return added;
 	}
 
 	/**
@@ -134,7 +261,102 @@ public class Post {
 	 */
 	public HashSet<User> getLikers() {
 		// À compléter
-		return new HashSet<>(this.likers);
+		HashSet<User> result = new HashSet<>();
+		forEachLikers(b -> b.forEach(id -> result.add(UserRegistry.get(id))));
+		return result;
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de l'ensemble des "likers" de ce Post.
+	 * Contrairement à getLikers(), cette méthode ne copie rien et coûte O(1): la
+	 * vue lit directement les identifiants des "likers", y compris ceux ajoutés
+	 * ensuite, et peut être parcourue pendant des ajouts concurrents. Elle est
+	 * parcourue par identifiant croissant.
+	 * 
+	 * @return une vue de l'ensemble des "likers" de ce Post
+	 * 
+	 * @ensures \result != null;
+	 * @ensures \result.equals(getLikers());
+	 * 
+	 * @pure
+	 */
+	public Set<User> getLikersView() {
+		// Créée au premier appel: deux threads peuvent en créer chacun une, équivalentes
+		Set<User> view = this.likersView;
+		if (view == null) {
+			view = new UserIdSet() {
+				@Override
+				int nextId(int from) {
+					int[] next = { -1 };
+					forEachLikers(b -> {
+						int v = b.nextValue(from);
+						if (v >= 0 && (next[0] < 0 || v < next[0])) {
+							next[0] = v;
+						}
+					});
+					return next[0];
+				}
+
+				@Override
+				boolean containsId(int id) {
+					return hasLikeFrom(UserRegistry.get(id));
+				}
+
+				@Override
+				public int size() {
+					return getLikeNumber();
+				}
+			};
+			this.likersView = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Renvoie une nouvelle instance de HashSet contenant les abonnements de
+	 * l'utilisateur spécifié ayant "liké" ce Post. L'intersection est calculée
+	 * directement sur les ensembles d'identifiants.
+	 * 
+	 * @param u l'utilisateur dont on cherche les abonnements ayant "liké" ce Post
+	 * 
+	 * @return l'ensemble des abonnements de u ayant "liké" ce Post
+	 * 
+	 * @requires u != null;
+	 * @ensures \result != null;
+	 * @ensures (\forall User v; \result.contains(v) <==> hasLikeFrom(v) &&
+	 *          u.hasSubscriptionTo(v));
+	 * 
+	 * @pure
+	 */
+	public HashSet<User> getLikersAmongSubscriptionsOf(User u) {
+		HashSet<User> result = new HashSet<>();
+		IdBitmap subscriptions = u.getSubscriptionIds();
+		List<IdBitmap> common = new ArrayList<>(1);
+		forEachLikers(b -> common.add(b.and(subscriptions)));
+		for (IdBitmap c : common) {
+			c.forEach(id -> result.add(UserRegistry.get(id)));
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre d'abonnements de l'utilisateur spécifié ayant "liké" ce
+	 * Post.
+	 * 
+	 * @param u l'utilisateur dont on compte les abonnements ayant "liké" ce Post
+	 * 
+	 * @return le nombre d'abonnements de u ayant "liké" ce Post
+	 * 
+	 * @requires u != null;
+	 * @ensures \result == getLikersAmongSubscriptionsOf(u).size();
+	 * 
+	 * @pure
+	 */
+	public int getLikeNumberAmongSubscriptionsOf(User u) {
+		IdBitmap subscriptions = u.getSubscriptionIds();
+		int[] n = { 0 };
+		forEachLikers(b -> n[0] += b.andCardinality(subscriptions));
+		return n[0];
 	}
 
 	/**
@@ -153,7 +375,7 @@ public class Post {
 	 */
 	public boolean isBefore(Post p) {
 		// À compléter
-		return this.creationDate.isBefore(p.getDate());
+		return this.creationDate < p.creationDate;
 	}
 
 	/**
@@ -172,6 +394,150 @@ public class Post {
 	 */
 	public boolean isAfter(Post p) {
 		// À compléter
-		return this.creationDate.isAfter(p.getDate());
+		return this.creationDate > p.creationDate;
+	}
+
+	/**
+	 * Renvoie les identifiants des "likers" de ce Post.
+	 * 
+	 * @ensures \result.length == getLikers().size();
+	 * @ensures \result est trié par ordre croissant;
+	 * 
+	 * @pure
+	 */
+	int[] getLikerIds() {
+		int[][] ids = { new int[getLikeNumber()] };
+		int[] n = { 0 };
+		forEachLikers(b -> {
+			if (n[0] + b.cardinality() > ids[0].length) {
+				ids[0] = Arrays.copyOf(ids[0], n[0] + b.cardinality());
+			}
+			b.forEach(id -> ids[0][n[0]++] = id);
+		});
+		int[] result = Arrays.copyOf(ids[0], n[0]);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Ajoute les "likers" d'identifiants spécifiés, recréés par Snapshot, sans les
+	 * journaliser.
+	 * 
+	 * @requires ids != null;
+	 * @requires les identifiants de ids sont distincts et absents des "likers";
+	 * @ensures getLikeNumber() == \old(getLikeNumber()) + ids.length;
+	 */
+	void restoreLikers(int[] ids) {
+		for (int id : ids) {
+			addLiker(id);
+		}
+		if (author != null) {
+			author.postLiked(getLikeNumber());
+		}
+	}
+
+	/**
+	 * Renvoie l'auteur de ce Post, ou null s'il n'a pas été créé par
+	 * User.addPost(String).
+	 * 
+	 * @pure
+	 */
+	User getAuthor() {
+		return this.author;
+	}
+
+	/**
+	 * Renvoie l'indice physique de ce Post dans le journal des Post de son auteur
+	 * (voir PostLog), ou -1 si getAuthor() est null.
+	 * 
+	 * @pure
+	 */
+	int getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Ajoute l'identifiant spécifié aux "likers" de ce Post, en fragmentant leur
+	 * ensemble lorsqu'il atteint HOT_LIKES identifiants, et renvoie true s'il n'y
+	 * figurait pas déjà.
+	 */
+	private boolean addLiker(int id) {
+		IdBitmap[] s = this.shards;
+		if (s == null) {
+			synchronized (this) {
+				s = this.shards;
+				if (s == null) {
+					if (this.likers == null) {
+						this.likers = new IdBitmap();
+					}
+					if (!this.likers.add(id)) {
+						return false;
+					}
+					// Seul écrivain: sous le verrou de ce Post
+					this.likeNb = this.likeNb + 1;
+					if (this.likeNb >= HOT_LIKES) {
+						stripe();
+					}
+					return true;
+				}
+			}
+		}
+		IdBitmap shard = s[shardOf(id)];
+		synchronized (shard) {
+			if (!shard.add(id)) {
+				return false;
+			}
+		}
+		this.hotLikeNb.increment();
+		return true;
+	}
+
+	/**
+	 * Répartit les "likers" entre LIKER_SHARDS fragments. Appelée sous le verrou
+	 * de ce Post.
+	 */
+	private void stripe() {
+		IdBitmap[] s = new IdBitmap[LIKER_SHARDS];
+		for (int i = 0; i < LIKER_SHARDS; i++) {
+			s[i] = new IdBitmap();
+		}
+		this.likers.forEach(id -> s[shardOf(id)].add(id));
+		this.hotLikeNb = new LongAdder();
+		// Fragments publiés après leur compteur: un "like" fragmenté le trouve
+		this.shards = s;
+		this.likers = null;
+	}
+
+	/**
+	 * Applique l'action spécifiée à chacun des IdBitmap contenant les "likers" de
+	 * ce Post, sous son verrou.
+	 */
+	private void forEachLikers(Consumer<IdBitmap> action) {
+		IdBitmap[] s = this.shards;
+		if (s == null) {
+			synchronized (this) {
+				s = this.shards;
+				if (s == null) {
+					if (this.likers != null) {
+						action.accept(this.likers);
+					}
+					return;
+				}
+			}
+		}
+		for (IdBitmap shard : s) {
+			synchronized (shard) {
+				action.accept(shard);
+			}
+		}
+	}
+
+	/**
+	 * Renvoie le fragment de l'ensemble des "likers" contenant l'identifiant
+	 * spécifié: les blocs de 64 identifiants consécutifs sont répartis à tour de
+	 * rôle entre les fragments.
+	 */
+	private static int shardOf(int id) {
+		return (id >>> 6) & (LIKER_SHARDS - 1);
 	}
 }
@@ -0,0 +1,35 @@
+package sociald1.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Benchmarks des "likes" d'un Post: ajout d'un "like" et test d'appartenance.
+ *
+ * Le Post et le User sont tirés au hasard à chaque appel: addLikeFrom mesure
+ * ainsi un mélange d'ajouts effectifs et de "likes" déjà présents, hasLikeFrom
+ * un mélange de réponses positives et négatives.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx8g" })
+public class PostBenchmark {
+
+	@Benchmark
+	public boolean addLikeFrom(SocialGraph graph) {
+		return graph.randomPost().addLikeFrom(graph.randomUser());
+	}
+
+	@Benchmark
+	public boolean hasLikeFrom(SocialGraph graph) {
+		return graph.randomPost().hasLikeFrom(graph.randomUser());
+	}
+}
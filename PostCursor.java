@@ -0,0 +1,78 @@
+package sociald1;
+
+import java.util.ListIterator;
+
+/**
+ * Curseur bidirectionnel sur une liste de Post ordonnée du plus récent au plus
+ * ancien: next() renvoie un Post plus ancien, previous() un Post plus récent.
+ *
+ * Contrairement aux méthodes d'itération de User et de NewsFeed, qui partagent
+ * le curseur mémorisé dans chaque User, un PostCursor porte sa propre position
+ * (voir User.cursor() et NewsFeed.cursor()). Plusieurs PostCursor peuvent donc
+ * parcourir les Post des mêmes auteurs au même moment sans interférer entre
+ * eux ni avec les itérations de User et de NewsFeed. Un PostCursor n'est pas
+ * destiné à être partagé entre plusieurs threads.
+ *
+ * Les opérations de modification de ListIterator ne sont pas supportées.
+ *
+ * @invariant nextIndex() == previousIndex() + 1;
+ * @invariant previousIndex() >= -1;
+ * @invariant lastIndex() == -1 || lastIndex() == nextIndex() ||
+ *            lastIndex() == previousIndex();
+ * @invariant lastIndex() == -1 <==> lastUser() == null;
+ * @invariant !hasPrevious() <==> previousIndex() == -1;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public interface PostCursor extends ListIterator<Post> {
+	/**
+	 * Renvoie l'index du Post renvoyé par le dernier appel à next() ou previous(),
+	 * ou -1 si ni next() ni previous() n'ont été appelées sur ce curseur.
+	 *
+	 * @return l'index du dernier Post renvoyé; -1 si aucun Post n'a été renvoyé
+	 *
+	 * @pure
+	 */
+	int lastIndex();
+
+	/**
+	 * Renvoie l'auteur du Post renvoyé par le dernier appel à next() ou previous(),
+	 * ou null si ni next() ni previous() n'ont été appelées sur ce curseur.
+	 *
+	 * @return l'auteur du dernier Post renvoyé; null si aucun Post n'a été renvoyé
+	 *
+	 * @pure
+	 */
+	User lastUser();
+
+	/**
+	 * Opération non supportée: les Post ne peuvent pas être retirés.
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	default void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+
+	/**
+	 * Opération non supportée: les Post ne peuvent pas être remplacés.
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	default void set(Post p) {
+		throw new UnsupportedOperationException("set");
+	}
+
+	/**
+	 * Opération non supportée: les Post sont ajoutés par User.addPost(String).
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	default void add(Post p) {
+		throw new UnsupportedOperationException("add");
+	}
+}
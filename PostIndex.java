@@ -0,0 +1,276 @@
+package sociald1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Index plein texte des Post du réseau social Microdon.
+ *
+ * Chaque Post créé par User.addPost(String) est indexé: son texte est découpé
+ * en termes (suites maximales de lettres et de chiffres, en minuscules) et le
+ * Post reçoit un numéro de document, attribué dans l'ordre d'indexation.
+ * Chaque terme est associé à une PostingList compacte des documents où il
+ * apparaît, avec ses positions.
+ *
+ * Trois sortes de recherches sont proposées, sur l'ensemble des Post ou sur
+ * les seuls Post du fil d'actualité d'un User (voir NewsFeed.search(String,
+ * int)):
+ * <ul>
+ * <li>un terme: les Post contenant ce terme</li>
+ * <li>plusieurs termes: les Post contenant tous ces termes</li>
+ * <li>une expression: les Post contenant ces termes consécutivement, dans cet
+ * ordre</li>
+ * </ul>
+ * Les résultats sont renvoyés du plus récent au plus ancien. L'ordre
+ * d'indexation ne suit pas toujours celui des dates de création: des Post
+ * publiés simultanément par plusieurs auteurs, ou importés avec une date
+ * passée (voir User.addPost(String, Instant)), sont indexés dans un ordre
+ * quelconque. Les PostingList sont parcourues à rebours et intersectées par
+ * sauts successifs vers le plus grand document commun, et les limit Post les
+ * plus récents rencontrés sont conservés dans un tas. Pour chaque document,
+ * l'index retient la plus grande date de création des documents qui le
+ * précèdent (lui compris): la recherche s'arrête dès que le tas est plein et
+ * qu'aucun document restant n'est plus récent que le plus ancien du tas, soit
+ * aussitôt le nombre de résultats atteint lorsque les Post sont indexés dans
+ * l'ordre de leur création.
+ *
+ * L'index peut être interrogé par plusieurs threads simultanément; une
+ * indexation attend la fin des recherches en cours et les bloque pendant sa
+ * durée, qui ne dépend que de la longueur du texte indexé.
+ *
+ * @invariant size() >= 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class PostIndex {
+	private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private static final HashMap<String, PostingList> terms = new HashMap<>();
+	private static final PostLog docs = new PostLog();
+	private static int[] authors = new int[1024];
+	// Plus grande date de création des documents 0 à d, pour tout document d
+	private static long[] prefixMax = new long[1024];
+
+	private PostIndex() {
+	}
+
+	/**
+	 * Renvoie le nombre de Post indexés.
+	 *
+	 * @return le nombre de Post indexés
+	 *
+	 * @pure
+	 */
+	public static int size() {
+		return docs.size();
+	}
+
+	/**
+	 * Renvoie au plus limit Post contenant tous les termes de la requête
+	 * spécifiée, du plus récent au plus ancien.
+	 *
+	 * @param query les termes recherchés
+	 * @param limit le nombre maximal de Post renvoyés
+	 *
+	 * @return les Post contenant tous les termes de query
+	 *
+	 * @requires query != null;
+	 * @requires limit >= 0;
+	 * @ensures \result != null && \result.size() <= limit;
+	 * @ensures tokenize(query).length == 0 ==> \result.isEmpty();
+	 * @ensures (\forall Post p; \result.contains(p);
+	 *          Arrays.asList(tokenize(p.getText())).containsAll(
+	 *          Arrays.asList(tokenize(query))));
+	 *
+	 * @pure
+	 */
+	public static List<Post> search(String query, int limit) {
+		return search(query, false, null, limit);
+	}
+
+	/**
+	 * Renvoie au plus limit Post contenant les termes de l'expression spécifiée
+	 * consécutivement et dans cet ordre, du plus récent au plus ancien.
+	 *
+	 * @param phrase l'expression recherchée
+	 * @param limit  le nombre maximal de Post renvoyés
+	 *
+	 * @return les Post contenant l'expression phrase
+	 *
+	 * @requires phrase != null;
+	 * @requires limit >= 0;
+	 * @ensures \result != null && \result.size() <= limit;
+	 * @ensures tokenize(phrase).length == 0 ==> \result.isEmpty();
+	 *
+	 * @pure
+	 */
+	public static List<Post> searchPhrase(String phrase, int limit) {
+		return search(phrase, true, null, limit);
+	}
+
+	/**
+	 * Recherche les Post contenant les termes de query (consécutivement si phrase
+	 * est true) dont l'auteur est accepté par authorFilter, ou de tout auteur si
+	 * authorFilter est null.
+	 */
+	static List<Post> search(String query, boolean phrase, IntPredicate authorFilter, int limit) {
+		String[] tokens = tokenize(query);
+		List<Post> result = new ArrayList<>();
+		if (tokens.length == 0 || limit <= 0) {
+			return result;
+		}
+		lock.readLock().lock();
+		try {
+			PostingList.Cursor[] cursors = new PostingList.Cursor[tokens.length];
+			for (int i = 0; i < tokens.length; i++) {
+				PostingList list = terms.get(tokens[i]);
+				if (list == null) {
+					return result;
+				}
+				cursors[i] = list.cursor();
+			}
+			// Les documents des limit résultats les plus récents, le plus ancien en
+			// tête; à date égale, le document indexé le plus tôt est le plus ancien
+			PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, 64),
+					Comparator.<Integer>comparingLong(d -> docs.get(d).getTimestamp()).thenComparingInt(d -> d));
+			int doc = docs.size() - 1;
+			search:
+			while (doc >= 0 && !(best.size() == limit && prefixMax[doc] <= docs.get(best.peek()).getTimestamp())) {
+				// Saute au plus grand document commun à tous les curseurs
+				boolean aligned;
+				do {
+					aligned = true;
+					for (PostingList.Cursor c : cursors) {
+						int d = c.seekAtMost(doc);
+						if (d < 0) {
+							break search;
+						}
+						if (d < doc) {
+							doc = d;
+							aligned = false;
+						}
+					}
+				} while (!aligned);
+				if ((authorFilter == null || authorFilter.test(authors[doc]))
+						&& (!phrase || isPhraseAt(cursors))) {
+					if (best.size() < limit) {
+						best.add(doc);
+					} else if (docs.get(doc).getTimestamp() > docs.get(best.peek()).getTimestamp()) {
+						// Indexé avant ceux du tas, doc ne l'emporte qu'à date plus récente
+						best.poll();
+						best.add(doc);
+					}
+				}
+				doc--;
+			}
+			while (!best.isEmpty()) {
+				result.add(docs.get(best.poll()));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Renvoie true si les termes des curseurs spécifiés, tous placés sur le même
+	 * document, y apparaissent consécutivement.
+	 */
+	private static boolean isPhraseAt(PostingList.Cursor[] cursors) {
+		PostingList.Cursor first = cursors[0];
+		for (int i = 0; i < first.positionNb(); i++) {
+			int start = first.position(i);
+			int j = 1;
+			while (j < cursors.length && cursors[j].hasPosition(start + j)) {
+				j++;
+			}
+			if (j == cursors.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Indexe le Post spécifié, créé par le User spécifié.
+	 *
+	 * @requires p != null && author != null;
+	 * @ensures size() == \old(size()) + 1;
+	 */
+	static void add(Post p, User author) {
+		String[] tokens = tokenize(p.getText());
+		// Regroupe les positions de chaque terme: tri des positions par terme
+		Integer[] order = new Integer[tokens.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> {
+			int cmp = tokens[i].compareTo(tokens[j]);
+			return cmp != 0 ? cmp : Integer.compare(i, j);
+		});
+		int[] positions = new int[tokens.length];
+		lock.writeLock().lock();
+		try {
+			int doc = docs.size();
+			if (doc == authors.length) {
+				authors = Arrays.copyOf(authors, doc * 2);
+				prefixMax = Arrays.copyOf(prefixMax, doc * 2);
+			}
+			authors[doc] = author.getId();
+			prefixMax[doc] = doc == 0 ? p.getTimestamp() : Math.max(prefixMax[doc - 1], p.getTimestamp());
+			int i = 0;
+			while (i < order.length) {
+				String term = tokens[order[i]];
+				int n = 0;
+				while (i < order.length && tokens[order[i]].equals(term)) {
+					positions[n++] = order[i++];
+				}
+				terms.computeIfAbsent(term, t -> new PostingList()).add(doc, positions, n);
+			}
+			// Publié en dernier: le document n'est visible qu'une fois indexé
+			docs.append(p);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Découpe le texte spécifié en termes: les suites maximales de lettres et de
+	 * chiffres, converties en minuscules.
+	 *
+	 * @requires text != null;
+	 * @ensures \result != null;
+	 *
+	 * @pure
+	 */
+	public static String[] tokenize(String text) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		ArrayList<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i < lower.length();) {
+			int c = lower.codePointAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				tokens.add(lower.substring(start, i));
+				start = -1;
+			}
+			i += Character.charCount(c);
+		}
+		if (start >= 0) {
+			tokens.add(lower.substring(start));
+		}
+		return tokens.toArray(new String[0]);
+	}
+}
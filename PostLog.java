@@ -0,0 +1,113 @@
+package sociald1;
+
+/**
+ * Journal des Post d'un User, rangés physiquement dans l'ordre de leur
+ * création: le Post d'indice physique 0 est le plus ancien. Les Post sont
+ * stockés dans des blocs de taille fixe, de sorte qu'un ajout en fin de journal
+ * coûte O(1) sans jamais déplacer ni recopier les Post déjà présents; seul le
+ * répertoire des blocs (un tableau de références) est agrandi.
+ *
+ * L'indice physique d'un Post ne change jamais: il peut donc servir de
+ * position stable à un curseur, même lorsque de nouveaux Post sont ajoutés.
+ *
+ * Un journal peut être lu par plusieurs threads pendant qu'un autre y ajoute
+ * des Post, sans verrou du côté des lecteurs: un Post est rangé dans son bloc
+ * avant que la taille (volatile) ne soit publiée, si bien qu'un lecteur ayant
+ * lu size() voit tous les Post d'indice inférieur. Un lecteur qui lit size()
+ * une seule fois obtient ainsi un instantané cohérent du journal, que les
+ * ajouts ultérieurs ne modifient pas. Les ajouts concurrents sont sérialisés
+ * entre eux mais ne bloquent jamais les lecteurs.
+ *
+ * @invariant size() >= 0;
+ * @invariant (\forall int i; i >= 0 && i < size(); get(i) != null);
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+class PostLog {
+	/**
+	 * Nombre de bits de l'indice d'un Post dans son bloc.
+	 */
+	static final int CHUNK_BITS = 10;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private Post[][] chunks;
+	private volatile int size;
+
+	/**
+	 * Initialise un journal vide.
+	 *
+	 * @ensures size() == 0;
+	 */
+	PostLog() {
+		this.chunks = new Post[4][];
+		this.size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Renvoie le Post d'indice physique spécifié.
+	 *
+	 * @requires i >= 0 && i < size();
+	 * @pure
+	 */
+	Post get(int i) {
+		// chunks est écrit avant size: il est à jour pour tout i < size() déjà lu
+		return chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+	}
+
+	/**
+	 * Renvoie, parmi les n premiers Post de ce journal, le nombre de Post dont
+	 * l'horodatage est antérieur à l'horodatage spécifié, ou égal si inclusive est
+	 * true (voir Timestamps). Les Post étant rangés par date croissante, la
+	 * recherche est dichotomique et coûte O(log n).
+	 *
+	 * @requires n >= 0 && n <= size();
+	 * @ensures \result >= 0 && \result <= n;
+	 * @ensures (\forall int i; i >= 0 && i < \result;
+	 *          get(i).getTimestamp() < date ||
+	 *          (inclusive && get(i).getTimestamp() == date));
+	 * @pure
+	 */
+	int rank(long date, boolean inclusive, int n) {
+		int lo = 0;
+		int hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			long t = get(mid).getTimestamp();
+			if (t < date || (inclusive && t == date)) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Ajoute le Post spécifié à la fin de ce journal.
+	 *
+	 * @requires p != null;
+	 * @ensures size() == \old(size()) + 1;
+	 * @ensures get(size() - 1) == p;
+	 */
+	synchronized void append(Post p) {
+		int n = size;
+		int c = n >>> CHUNK_BITS;
+		if (c == chunks.length) {
+			Post[][] newChunks = new Post[chunks.length * 2][];
+			System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+			chunks = newChunks;
+		}
+		if (chunks[c] == null) {
+			chunks[c] = new Post[CHUNK_SIZE];
+		}
+		chunks[c][n & CHUNK_MASK] = p;
+		// Publication: rend le Post visible aux lecteurs
+		size = n + 1;
+	}
+}
@@ -0,0 +1,51 @@
+package sociald1;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Vue non modifiable d'une tranche du journal des Post d'un User (voir
+ * PostLog), présentée du plus récent au plus ancien.
+ *
+ * La tranche est formée des Post d'indices physiques from à to - 1; elle est
+ * fixée à la création de la vue, que les Post ajoutés ensuite au journal ne
+ * modifient pas. Aucun Post n'est copié: créer la vue coûte O(1) et get(int)
+ * lit directement le journal.
+ *
+ * @invariant size() >= 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+final class PostRange extends AbstractList<Post> implements RandomAccess {
+	private final PostLog posts;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Initialise la vue des Post d'indices physiques from à to - 1 du journal
+	 * spécifié.
+	 *
+	 * @requires posts != null;
+	 * @requires from >= 0 && from <= to && to <= posts.size();
+	 * @ensures size() == to - from;
+	 */
+	PostRange(PostLog posts, int from, int to) {
+		this.posts = posts;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public Post get(int i) {
+		if (i < 0 || i >= size()) {
+			throw new IndexOutOfBoundsException(i);
+		}
+		return posts.get(to - 1 - i);
+	}
+
+	@Override
+	public int size() {
+		return to - from;
+	}
+}
@@ -0,0 +1,245 @@
+package sociald1;
+
+/**
+ * Liste des occurrences d'un terme dans les Post indexés par PostIndex.
+ *
+ * Chaque entrée associe un numéro de document (le numéro d'indexation du Post)
+ * aux positions du terme dans le texte du Post. Les entrées sont ajoutées par
+ * numéro de document croissant et rangées par blocs de BLOCK_SIZE entrées:
+ * dans un bloc, chaque numéro de document est codé par son écart avec le
+ * précédent, puis viennent le nombre de positions et les écarts entre
+ * positions successives, chaque entier étant codé sur un nombre variable
+ * d'octets (7 bits par octet). Une table donne pour chaque bloc son premier
+ * numéro de document et le début de son codage, ce qui permet à un Cursor de
+ * sauter directement au bloc contenant un numéro de document donné.
+ *
+ * Une PostingList n'est pas synchronisée: PostIndex sérialise les ajouts et
+ * empêche toute lecture pendant un ajout.
+ *
+ * @invariant size() >= 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+final class PostingList {
+	/**
+	 * Nombre d'entrées par bloc.
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	private byte[] data;
+	private int length;
+	private int[] blockFirst;
+	private int[] blockOffset;
+	private int blockNb;
+	private int size;
+	private int lastDoc;
+
+	/**
+	 * Initialise une liste vide.
+	 *
+	 * @ensures size() == 0;
+	 */
+	PostingList() {
+		this.data = new byte[16];
+		this.blockFirst = new int[1];
+		this.blockOffset = new int[1];
+		this.lastDoc = -1;
+	}
+
+	/**
+	 * Renvoie le nombre d'entrées de cette liste.
+	 *
+	 * @pure
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Ajoute l'entrée du document spécifié, où le terme apparaît aux posNb
+	 * premières positions du tableau spécifié.
+	 *
+	 * @requires doc > (\max int d; d est un document de cette liste);
+	 * @requires posNb > 0;
+	 * @requires (\forall int i; i > 0 && i < posNb; positions[i - 1] < positions[i]);
+	 * @ensures size() == \old(size()) + 1;
+	 */
+	void add(int doc, int[] positions, int posNb) {
+		if (size % BLOCK_SIZE == 0) {
+			if (blockNb == blockFirst.length) {
+				blockFirst = grow(blockFirst);
+				blockOffset = grow(blockOffset);
+			}
+			blockFirst[blockNb] = doc;
+			blockOffset[blockNb] = length;
+			blockNb++;
+		} else {
+			writeVarint(doc - lastDoc);
+		}
+		writeVarint(posNb);
+		int previous = 0;
+		for (int i = 0; i < posNb; i++) {
+			writeVarint(positions[i] - previous);
+			previous = positions[i];
+		}
+		lastDoc = doc;
+		size++;
+	}
+
+	/**
+	 * Renvoie un nouveau curseur parcourant les entrées de cette liste par numéro
+	 * de document décroissant.
+	 *
+	 * @pure
+	 */
+	Cursor cursor() {
+		return new Cursor();
+	}
+
+	private void writeVarint(int v) {
+		if (length + 5 > data.length) {
+			byte[] grown = new byte[data.length * 2];
+			System.arraycopy(data, 0, grown, 0, length);
+			data = grown;
+		}
+		while ((v & ~0x7F) != 0) {
+			data[length++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		data[length++] = (byte) v;
+	}
+
+	private static int[] grow(int[] a) {
+		int[] grown = new int[a.length * 2];
+		System.arraycopy(a, 0, grown, 0, a.length);
+		return grown;
+	}
+
+	/**
+	 * Curseur parcourant les entrées d'une PostingList par numéro de document
+	 * décroissant. Un seul bloc est décodé à la fois.
+	 */
+	final class Cursor {
+		private final int[] docs = new int[BLOCK_SIZE];
+		private final int[] posStart = new int[BLOCK_SIZE + 1];
+		private int[] positions = new int[BLOCK_SIZE * 4];
+		// Bloc décodé (blockNb avant le premier déplacement), entrée courante
+		private int block = blockNb;
+		private int index = -1;
+		// Octet lu par readVarint() pendant le décodage d'un bloc
+		private int offset;
+
+		/**
+		 * Se déplace sur l'entrée de plus grand numéro de document inférieur ou égal
+		 * à target et renvoie ce numéro, ou -1 s'il n'en existe pas. Les appels
+		 * successifs doivent spécifier des target décroissants.
+		 */
+		int seekAtMost(int target) {
+			if (block < blockNb && index >= 0 && docs[0] <= target) {
+				while (docs[index] > target) {
+					index--;
+				}
+				return docs[index];
+			}
+			// Dernier bloc précédant le bloc décodé dont le premier document est <= target
+			int lo = 0;
+			int hi = Math.min(block, blockNb);
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (blockFirst[mid] <= target) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			if (lo == 0) {
+				block = 0;
+				index = -1;
+				return -1;
+			}
+			decode(lo - 1);
+			while (docs[index] > target) {
+				index--;
+			}
+			return docs[index];
+		}
+
+		/**
+		 * Renvoie true si le terme apparaît à la position spécifiée dans le document
+		 * courant.
+		 *
+		 * @requires le dernier appel à seekAtMost(int) a renvoyé un numéro >= 0;
+		 */
+		boolean hasPosition(int position) {
+			int lo = posStart[index];
+			int hi = posStart[index + 1];
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (positions[mid] < position) {
+					lo = mid + 1;
+				} else if (positions[mid] > position) {
+					hi = mid;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Renvoie le nombre de positions du terme dans le document courant.
+		 */
+		int positionNb() {
+			return posStart[index + 1] - posStart[index];
+		}
+
+		/**
+		 * Renvoie la ième position du terme dans le document courant.
+		 */
+		int position(int i) {
+			return positions[posStart[index] + i];
+		}
+
+		private void decode(int b) {
+			int end = b + 1 < blockNb ? blockOffset[b + 1] : length;
+			offset = blockOffset[b];
+			int doc = blockFirst[b];
+			int n = 0;
+			int p = 0;
+			while (offset < end) {
+				if (n > 0) {
+					doc += readVarint();
+				}
+				int posNb = readVarint();
+				if (p + posNb > positions.length) {
+					int[] grown = new int[Math.max(positions.length * 2, p + posNb)];
+					System.arraycopy(positions, 0, grown, 0, p);
+					positions = grown;
+				}
+				docs[n] = doc;
+				posStart[n] = p;
+				int position = 0;
+				for (int i = 0; i < posNb; i++) {
+					position += readVarint();
+					positions[p++] = position;
+				}
+				n++;
+			}
+			posStart[n] = p;
+			block = b;
+			index = n - 1;
+		}
+
+		private int readVarint() {
+			int v = 0;
+			for (int shift = 0;; shift += 7) {
+				byte x = data[offset++];
+				v |= (x & 0x7F) << shift;
+				if (x >= 0) {
+					return v;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package sociald1;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Horloge simulée: une TimeSource dont l'heure ne change que sur demande.
+ *
+ * Installée par Timestamps.setSource(TimeSource), elle rend les dates des Post
+ * et des User créés entièrement déterminées par le programme, par exemple pour
+ * des tests reproductibles ou pour l'import de Post historiques. Chaque lecture
+ * peut en outre avancer l'heure d'un pas fixe (voir setStep(Duration)), ce qui
+ * espace régulièrement les Post créés successivement.
+ *
+ * Une SimulatedClock peut être utilisée par plusieurs threads.
+ *
+ * @invariant getStep() != null && !getStep().isNegative();
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class SimulatedClock implements TimeSource {
+	private long now;
+	private long step;
+
+	/**
+	 * Initialise une horloge simulée à la date spécifiée, dont l'heure n'avance
+	 * que par set(Instant) et advance(Duration).
+	 *
+	 * @param start la date initiale
+	 *
+	 * @requires start != null;
+	 * @ensures getInstant().equals(start);
+	 * @ensures getStep().isZero();
+	 */
+	public SimulatedClock(Instant start) {
+		this.now = Timestamps.of(start);
+	}
+
+	/**
+	 * Renvoie l'heure courante de cette horloge, puis l'avance de getStep().
+	 */
+	@Override
+	public synchronized long epochNanos() {
+		long t = now;
+		now += step;
+		return t;
+	}
+
+	/**
+	 * Renvoie l'heure courante de cette horloge, sans l'avancer.
+	 *
+	 * @pure
+	 */
+	public synchronized Instant getInstant() {
+		return Timestamps.toInstant(now);
+	}
+
+	/**
+	 * Fixe l'heure courante de cette horloge.
+	 *
+	 * @requires date != null;
+	 * @ensures getInstant().equals(date);
+	 */
+	public synchronized void set(Instant date) {
+		now = Timestamps.of(date);
+	}
+
+	/**
+	 * Avance l'heure courante de cette horloge de la durée spécifiée.
+	 *
+	 * @requires duration != null && !duration.isNegative();
+	 * @ensures getInstant().equals(\old(getInstant()).plus(duration));
+	 */
+	public synchronized void advance(Duration duration) {
+		now += duration.toNanos();
+	}
+
+	public synchronized Duration getStep() {
+		return Duration.ofNanos(step);
+	}
+
+	/**
+	 * Fixe la durée dont chaque lecture (epochNanos()) avance cette horloge.
+	 *
+	 * @throws IllegalArgumentException si step est négative
+	 *
+	 * @requires step != null;
+	 * @ensures getStep().equals(step);
+	 */
+	public synchronized void setStep(Duration step) {
+		if (step.isNegative()) {
+			throw new IllegalArgumentException("Pas négatif: " + step);
+		}
+		this.step = step.toNanos();
+	}
+}
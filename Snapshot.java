@@ -0,0 +1,471 @@
+package sociald1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Instantané binaire compact du réseau social Microdon.
+ *
+ * write(Path) enregistre le réseau entier dans un fichier: les User (nom, mot
+ * de passe, date d'inscription et identifiants de leurs abonnements), leurs
+ * Post (date, texte) et les identifiants des "likers" de chaque Post.
+ * read(Path) recrée ce réseau dans une JVM où aucun User n'a encore été créé,
+ * avec les mêmes identifiants, les mêmes dates et le même index plein texte
+ * (voir PostIndex). Contrairement au Journal, qui rejoue une à une toutes les
+ * modifications, un instantané ne contient que l'état final et se relit par
+ * blocs, sans aucun enregistrement intermédiaire. Un instantané écrit pendant
+ * la journalisation enregistre la position du Journal à laquelle il a été
+ * écrit: un Journal ouvert après read(Path) ne rejoue que les enregistrements
+ * suivants (voir Journal.checkpoint(Path)).
+ *
+ * Les User sont répartis en partitions de PARTITION_USERS identifiants
+ * consécutifs. Chaque partition est codée indépendamment en trois sections:
+ * User, abonnements et Post. Les partitions peuvent ainsi être codées et
+ * relues en parallèle (voir write(Path, boolean) et read(Path, boolean)); une
+ * table des sections, à la fin du fichier, donne la position de chacune.
+ *
+ * Format (entiers en big-endian):
+ * <ul>
+ * <li>en-tête: MAGIC (int), VERSION (int), nombre de User (int), nombre de
+ * partitions (int), position de la table des sections (long), position du
+ * Journal (long, Journal.NO_JOURNAL si aucun journal n'était ouvert)</li>
+ * <li>section User: pour chaque User, nom et mot de passe (chaînes), date
+ * d'inscription (secondes long, nanosecondes int)</li>
+ * <li>section abonnements: pour chaque User, nombre d'abonnements (int) puis
+ * leurs identifiants croissants (int)</li>
+ * <li>section Post: pour chaque User, nombre de Post (int) puis, du plus ancien
+ * au plus récent, date (secondes long, nanosecondes int), texte (chaîne),
+ * nombre de "likers" (int) et leurs identifiants croissants (int)</li>
+ * <li>table: pour chaque partition, position de sa première section (long),
+ * longueurs de ses trois sections, contiguës (int), et CRC32 de ces sections
+ * (int)</li>
+ * </ul>
+ * Les chaînes sont codées sans perte comme dans TextArena, précédées de leur
+ * longueur en octets (int), négative si elles sont codées sur deux octets par
+ * caractère (voir TextArena.write(ByteBuffer, String, byte[])). Le fichier
+ * est écrit sous un nom temporaire, son en-tête en dernier, puis renommé: un
+ * instantané interrompu ne remplace jamais le précédent. Les sommes de contrôle
+ * sont vérifiées avant toute création de User.
+ *
+ * Un instantané doit être écrit sans modification concurrente du réseau.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class Snapshot {
+	/**
+	 * Marque des fichiers d'instantané ("SD1S").
+	 */
+	public static final int MAGIC = 0x53443153;
+
+	/**
+	 * Version du format écrit par write(Path).
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * Nombre de User par partition.
+	 */
+	public static final int PARTITION_USERS = 1024;
+
+	private static final int HEADER_SIZE = 32;
+	private static final int TABLE_ENTRY_SIZE = 24;
+
+	private Snapshot() {
+	}
+
+	/**
+	 * Enregistre le réseau entier dans le fichier spécifié, en codant les
+	 * partitions en parallèle.
+	 *
+	 * @param file le fichier de l'instantané, remplacé s'il existe
+	 *
+	 * @throws IOException si le fichier ne peut être écrit
+	 *
+	 * @requires file != null;
+	 */
+	public static void write(Path file) throws IOException {
+		write(file, true);
+	}
+
+	/**
+	 * Enregistre le réseau entier dans le fichier spécifié, en codant les
+	 * partitions en parallèle si parallel est true.
+	 *
+	 * @param file     le fichier de l'instantané, remplacé s'il existe
+	 * @param parallel true pour coder les partitions en parallèle
+	 *
+	 * @throws IOException si le fichier ne peut être écrit
+	 *
+	 * @requires file != null;
+	 */
+	public static void write(Path file, boolean parallel) throws IOException {
+		long journalPosition = Journal.position();
+		int userNb = UserRegistry.size();
+		int partitionNb = (userNb + PARTITION_USERS - 1) / PARTITION_USERS;
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer table = ByteBuffer.allocate(partitionNb * TABLE_ENTRY_SIZE);
+			AtomicLong end = new AtomicLong(HEADER_SIZE);
+			IntStream partitions = IntStream.range(0, partitionNb);
+			try {
+				(parallel ? partitions.parallel() : partitions).forEach(k -> {
+					Output out = new Output();
+					int first = k * PARTITION_USERS;
+					int last = Math.min(first + PARTITION_USERS, userNb);
+					for (int id = first; id < last; id++) {
+						writeUser(out, UserRegistry.get(id));
+					}
+					int usersLength = out.length();
+					for (int id = first; id < last; id++) {
+						writeSubscriptions(out, UserRegistry.get(id));
+					}
+					int subscriptionsLength = out.length() - usersLength;
+					for (int id = first; id < last; id++) {
+						writePosts(out, UserRegistry.get(id));
+					}
+					int postsLength = out.length() - usersLength - subscriptionsLength;
+					long offset = end.getAndAdd(out.length());
+					ByteBuffer data = out.flip();
+					CRC32 crc = new CRC32();
+					crc.update(data.duplicate());
+					writeFully(ch, data, offset);
+					table.putLong(k * TABLE_ENTRY_SIZE, offset);
+					table.putInt(k * TABLE_ENTRY_SIZE + 8, usersLength);
+					table.putInt(k * TABLE_ENTRY_SIZE + 12, subscriptionsLength);
+					table.putInt(k * TABLE_ENTRY_SIZE + 16, postsLength);
+					table.putInt(k * TABLE_ENTRY_SIZE + 20, (int) crc.getValue());
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			long tableOffset = end.get();
+			writeFully(ch, table, tableOffset);
+			ch.force(false);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(userNb).putInt(partitionNb).putLong(tableOffset)
+					.putLong(journalPosition).flip();
+			writeFully(ch, header, 0);
+			ch.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Recrée le réseau enregistré dans le fichier spécifié, en relisant les
+	 * partitions en parallèle.
+	 *
+	 * @param file le fichier de l'instantané
+	 *
+	 * @throws IOException           si le fichier ne peut être lu ou n'est pas un
+	 *                               instantané valide
+	 * @throws IllegalStateException si des User ont déjà été créés ou si un
+	 *                               Journal est ouvert
+	 *
+	 * @requires file != null;
+	 * @ensures UserRegistry.size() == nombre de User de l'instantané;
+	 */
+	public static void read(Path file) throws IOException {
+		read(file, true);
+	}
+
+	/**
+	 * Recrée le réseau enregistré dans le fichier spécifié, en relisant les
+	 * partitions en parallèle si parallel est true. Les User sont créés dans
+	 * l'ordre de leurs identifiants, puis leurs Post et leurs "likes", puis leurs
+	 * abonnements; les Post sont enfin indexés par date croissante. Le prochain
+	 * Journal ouvert reprend à la position enregistrée par l'instantané.
+	 *
+	 * @param file     le fichier de l'instantané
+	 * @param parallel true pour relire les partitions en parallèle
+	 *
+	 * @throws IOException           si le fichier ne peut être lu ou n'est pas un
+	 *                               instantané valide
+	 * @throws IllegalStateException si des User ont déjà été créés ou si un
+	 *                               Journal est ouvert
+	 *
+	 * @requires file != null;
+	 */
+	public static void read(Path file, boolean parallel) throws IOException {
+		if (UserRegistry.size() != 0) {
+			throw new IllegalStateException("Instantané relu après la création de " + UserRegistry.size() + " User");
+		}
+		if (Journal.isOpen()) {
+			throw new IllegalStateException("Instantané relu pendant la journalisation");
+		}
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(ch, header, 0);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException("Pas un instantané: " + file);
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException("Version d'instantané non prise en charge: " + header.getInt(4));
+			}
+			int userNb = header.getInt(8);
+			int partitionNb = header.getInt(12);
+			long tableOffset = header.getLong(16);
+			long journalPosition = header.getLong(24);
+			if (userNb < 0 || journalPosition < Journal.NO_JOURNAL || partitionNb != (userNb + PARTITION_USERS - 1) / PARTITION_USERS
+					|| tableOffset + (long) partitionNb * TABLE_ENTRY_SIZE != ch.size()) {
+				throw new IOException("En-tête d'instantané invalide: " + file);
+			}
+			ByteBuffer table = ByteBuffer.allocate(partitionNb * TABLE_ENTRY_SIZE);
+			readFully(ch, table, tableOffset);
+			ByteBuffer[][] sections = new ByteBuffer[partitionNb][];
+			int[] checksums = new int[partitionNb];
+			for (int k = 0; k < partitionNb; k++) {
+				checksums[k] = table.getInt(k * TABLE_ENTRY_SIZE + 20);
+				long offset = table.getLong(k * TABLE_ENTRY_SIZE);
+				int[] lengths = { table.getInt(k * TABLE_ENTRY_SIZE + 8), table.getInt(k * TABLE_ENTRY_SIZE + 12),
+						table.getInt(k * TABLE_ENTRY_SIZE + 16) };
+				sections[k] = new ByteBuffer[3];
+				for (int s = 0; s < 3; s++) {
+					if (offset < HEADER_SIZE || lengths[s] < 0 || offset + lengths[s] > tableOffset) {
+						throw new IOException("Table des sections invalide: " + file);
+					}
+					sections[k][s] = ch.map(FileChannel.MapMode.READ_ONLY, offset, lengths[s]);
+					offset += lengths[s];
+				}
+			}
+
+			forEachPartition(partitionNb, parallel, k -> {
+				CRC32 crc = new CRC32();
+				for (ByteBuffer section : sections[k]) {
+					crc.update(section.duplicate());
+				}
+				if ((int) crc.getValue() != checksums[k]) {
+					throw new IOException("Partition " + k + " de l'instantané corrompue: " + file);
+				}
+			});
+			// Les identifiants sont attribués dans l'ordre de création: User en séquence
+			for (int k = 0; k < partitionNb; k++) {
+				int first = k * PARTITION_USERS;
+				int last = Math.min(first + PARTITION_USERS, userNb);
+				decode(sections[k][0], r -> {
+					for (int id = first; id < last; id++) {
+						String name = TextArena.read(r);
+						String password = TextArena.read(r);
+						long date = Timestamps.of(Instant.ofEpochSecond(r.getLong(), r.getInt()));
+						Timestamps.observe(date);
+						User u = new User(name, password, date);
+						if (u.getId() != id) {
+							throw new IllegalStateException("User " + id + " recréé avec l'identifiant " + u.getId());
+						}
+					}
+				});
+			}
+			// Post avant abonnements: addSubscription(User) compte les Post déjà publiés
+			forEachPartition(partitionNb, parallel, k -> decode(sections[k][2], r -> {
+				int last = Math.min((k + 1) * PARTITION_USERS, userNb);
+				for (int id = k * PARTITION_USERS; id < last; id++) {
+					readPosts(r, UserRegistry.get(id), userNb);
+				}
+			}));
+			forEachPartition(partitionNb, parallel, k -> decode(sections[k][1], r -> {
+				int last = Math.min((k + 1) * PARTITION_USERS, userNb);
+				for (int id = k * PARTITION_USERS; id < last; id++) {
+					User u = UserRegistry.get(id);
+					for (int n = r.getInt(); n > 0; n--) {
+						u.addSubscription(user(r.getInt(), userNb));
+					}
+				}
+			}));
+			index(userNb);
+			Journal.restoredFrom(journalPosition, userNb);
+		}
+	}
+
+	private static void writeUser(Output out, User u) {
+		out.putString(u.getName());
+		out.putString(u.getPassword());
+		out.ensure(12).putLong(u.getRegistrationDate().getEpochSecond()).putInt(u.getRegistrationDate().getNano());
+	}
+
+	private static void writeSubscriptions(Output out, User u) {
+		IdBitmap subscriptions = u.getSubscriptionIds();
+		ByteBuffer b = out.ensure(4 + 4 * subscriptions.cardinality());
+		b.putInt(subscriptions.cardinality());
+		subscriptions.forEach(b::putInt);
+	}
+
+	private static void writePosts(Output out, User u) {
+		PostLog posts = u.getPostLog();
+		int postNb = posts.size();
+		out.ensure(4).putInt(postNb);
+		for (int i = 0; i < postNb; i++) {
+			Post p = posts.get(i);
+			out.ensure(12).putLong(p.getDate().getEpochSecond()).putInt(p.getDate().getNano());
+			out.putString(p.getText());
+			int[] likers = p.getLikerIds();
+			out.ensure(4 + 4 * likers.length).putInt(likers.length).asIntBuffer().put(likers);
+			out.skip(4 * likers.length);
+		}
+	}
+
+	private static void readPosts(ByteBuffer r, User author, int userNb) {
+		for (int n = r.getInt(); n > 0; n--) {
+			long date = Timestamps.of(Instant.ofEpochSecond(r.getLong(), r.getInt()));
+			Post p = new Post(TextArena.read(r), date, author, author.getPostNb());
+			int[] likers = new int[r.getInt()];
+			r.asIntBuffer().get(likers);
+			r.position(r.position() + 4 * likers.length);
+			for (int id : likers) {
+				user(id, userNb);
+			}
+			author.restorePost(p);
+			p.restoreLikers(likers);
+		}
+	}
+
+	/**
+	 * Indexe tous les Post par date de création croissante: une recherche s'arrête
+	 * alors dès que le nombre de résultats demandé est atteint (voir PostIndex).
+	 */
+	private static void index(int userNb) {
+		int postNb = 0;
+		for (int id = 0; id < userNb; id++) {
+			postNb += UserRegistry.get(id).getPostNb();
+		}
+		Post[] all = new Post[postNb];
+		int n = 0;
+		for (int id = 0; id < userNb; id++) {
+			PostLog posts = UserRegistry.get(id).getPostLog();
+			for (int i = 0; i < posts.size(); i++) {
+				all[n++] = posts.get(i);
+			}
+		}
+		Arrays.parallelSort(all, Comparator.comparingLong(Post::getTimestamp)
+				.thenComparingInt((Post p) -> p.getAuthor().getId()).thenComparingInt(Post::getPosition));
+		for (Post p : all) {
+			PostIndex.add(p, p.getAuthor());
+		}
+		// Les Post créés ensuite restent postérieurs aux Post relus
+		if (postNb > 0) {
+			Timestamps.observe(all[postNb - 1].getTimestamp());
+		}
+	}
+
+	/**
+	 * Exécute l'action spécifiée pour chaque partition, en parallèle si parallel
+	 * est true, en propageant ses IOException.
+	 */
+	private static void forEachPartition(int partitionNb, boolean parallel, PartitionAction action)
+			throws IOException {
+		IntStream partitions = IntStream.range(0, partitionNb);
+		try {
+			(parallel ? partitions.parallel() : partitions).forEach(k -> {
+				try {
+					action.run(k);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Décode la section spécifiée, qui doit être lue exactement en entier.
+	 */
+	private static void decode(ByteBuffer section, SectionReader reader) throws IOException {
+		try {
+			reader.read(section);
+		} catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+			throw new IOException("Section d'instantané tronquée", e);
+		}
+		if (section.hasRemaining()) {
+			throw new IOException("Section d'instantané trop longue: " + section.remaining() + " octets en trop");
+		}
+	}
+
+	private static User user(int id, int userNb) {
+		if (id < 0 || id >= userNb) {
+			throw new IllegalArgumentException("User " + id + " inconnu");
+		}
+		return UserRegistry.get(id);
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer b, long position) {
+		try {
+			while (b.hasRemaining()) {
+				position += ch.write(b, position);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void readFully(FileChannel ch, ByteBuffer b, long position) throws IOException {
+		while (b.hasRemaining()) {
+			int n = ch.read(b, position);
+			if (n < 0) {
+				throw new IOException("Instantané tronqué");
+			}
+			position += n;
+		}
+		b.flip();
+	}
+
+	@FunctionalInterface
+	private interface SectionReader {
+		void read(ByteBuffer r);
+	}
+
+	@FunctionalInterface
+	private interface PartitionAction {
+		void run(int k) throws IOException;
+	}
+
+	/**
+	 * Tampon d'écriture extensible d'une partition.
+	 */
+	private static final class Output {
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+		/**
+		 * Renvoie le tampon, agrandi si nécessaire pour recevoir n octets de plus.
+		 */
+		ByteBuffer ensure(int n) {
+			if (buffer.remaining() < n) {
+				long capacity = Math.max(2L * buffer.capacity(), (long) buffer.position() + n);
+				ByteBuffer grown = ByteBuffer.allocate((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+				grown.put(buffer.flip());
+				buffer = grown;
+			}
+			return buffer;
+		}
+
+		void putString(String s) {
+			byte[] bytes = TextArena.encode(s);
+			TextArena.write(ensure(4 + bytes.length), s, bytes);
+		}
+
+		void skip(int n) {
+			buffer.position(buffer.position() + n);
+		}
+
+		int length() {
+			return buffer.position();
+		}
+
+		ByteBuffer flip() {
+			return buffer.flip();
+		}
+	}
+}
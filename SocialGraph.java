@@ -0,0 +1,67 @@
+package sociald1.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import sociald1.GraphGenerator;
+import sociald1.Post;
+import sociald1.User;
+
+/**
+ * Graphe social partagé par les benchmarks, produit par GraphGenerator: userNb
+ * User ayant en moyenne SUBSCRIPTION_NB abonnements et POST_NB Post, chaque
+ * Post ayant reçu en moyenne LIKE_NB "likes", selon des lois de puissance.
+ *
+ * Le graphe est construit une fois par essai (voir Level.Trial) à partir d'une
+ * graine fixe: deux exécutions d'un même benchmark mesurent le même graphe.
+ * Comme UserRegistry est global, chaque taille de graphe doit être mesurée dans
+ * sa propre JVM (fork), ce que fait Benchmarks par défaut.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+@State(Scope.Benchmark)
+public class SocialGraph {
+	static final int SUBSCRIPTION_NB = 20;
+	static final int POST_NB = 2;
+	static final int LIKE_NB = 4;
+	private static final long SEED = 42L;
+
+	@Param({ "100", "1000", "10000", "100000", "1000000" })
+	public int userNb;
+
+	User[] users;
+	Post[] posts;
+
+	private int builtUserNb;
+	private int builtPostNb;
+
+	@Setup(Level.Trial)
+	public void build() {
+		users = new User[userNb];
+		posts = new Post[userNb * POST_NB];
+		GraphGenerator gen = new GraphGenerator(SEED, userNb, posts.length);
+		gen.setMeanSubscriptions(SUBSCRIPTION_NB);
+		gen.setMeanLikes(LIKE_NB);
+		gen.generate(u -> users[builtUserNb++] = u, p -> posts[builtPostNb++] = p);
+	}
+
+	/**
+	 * Renvoie un User du graphe tiré au hasard.
+	 */
+	User randomUser() {
+		return users[ThreadLocalRandom.current().nextInt(users.length)];
+	}
+
+	/**
+	 * Renvoie un Post du graphe tiré au hasard.
+	 */
+	Post randomPost() {
+		return posts[ThreadLocalRandom.current().nextInt(posts.length)];
+	}
+}
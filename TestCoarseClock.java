@@ -0,0 +1,162 @@
+package sociald1.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static sociald1.test.DataProvider.LG_STREAM;
+import static sociald1.test.DataProvider.randInt;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import sociald1.CoarseClock;
+
+/**
+ * Test class for CoarseClock.
+ *
+ * Horloge à gros grain: une TimeSource dont l'heure est mise à jour par un
+ * thread dédié à intervalles réguliers et lue sans appel à l'horloge du
+ * système. L'heure renvoyée peut retarder d'au plus la résolution de
+ * l'horloge.
+ *
+ * Chaque test arrête les horloges qu'il démarre.
+ */
+public class TestCoarseClock {
+
+	/**
+	 * Résolutions de -1ms à 2ms, dont des résolutions non positives.
+	 */
+	public static Stream<Duration> resolutionProvider() {
+		return Stream.generate(() -> Duration.ofNanos(randInt(3_000_000) - 1_000_000)).limit(LG_STREAM / 10);
+	}
+
+	public void assertInvariant(CoarseClock self) {
+		// Put here the code to check the invariant:
+		// @invariant getResolution() != null && !getResolution().isNegative();
+		assertTrue(self.getResolution() != null && !self.getResolution().isNegative());
+	}
+
+	/**
+	 * Test method for constructor CoarseClock
+	 *
+	 * Initialise et démarre une horloge mise à jour tous les intervalles de durée
+	 * spécifiée.
+	 */
+	@ParameterizedTest
+	@MethodSource("resolutionProvider")
+	public void testCoarseClock(Duration resolution) {
+
+		// Pré-conditions:
+		// @requires resolution != null;
+
+		// Test du rejet d'une résolution non positive:
+		if (resolution.isZero() || resolution.isNegative()) {
+			try {
+				new CoarseClock(resolution).close();
+				fail("La résolution doit être strictement positive");
+			} catch (IllegalArgumentException e) {
+				// Comportement attendu
+			}
+			return;
+		}
+		Instant before = Instant.now();
+
+		// Exécution:
+		try (CoarseClock result = new CoarseClock(resolution)) {
+
+			// Post-conditions:
+			// @ensures getResolution().equals(resolution);
+			assertEquals(resolution, result.getResolution());
+			// L'heure initiale est celle du système à la création
+			Instant date = date(result);
+			assertFalse(date.isBefore(before));
+			assertFalse(date.isAfter(Instant.now()));
+
+			// Invariant:
+			assertInvariant(result);
+		}
+	}
+
+	/**
+	 * Test method for method epochNanos
+	 *
+	 * Renvoie l'heure de la dernière mise à jour de cette horloge.
+	 */
+	@ParameterizedTest
+	@MethodSource("resolutionProvider")
+	public void testepochNanos(Duration resolution) throws InterruptedException {
+		// Pré-conditions:
+		assumeTrue(!resolution.isZero() && !resolution.isNegative());
+
+		try (CoarseClock self = new CoarseClock(resolution)) {
+			// Invariant:
+			assertInvariant(self);
+
+			// Exécution:
+			long first = self.epochNanos();
+			long last = first;
+			// L'heure avance, sans jamais reculer, en quelques résolutions
+			long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+			while (last == first && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+				long t = self.epochNanos();
+				assertTrue(t >= last);
+				last = t;
+			}
+
+			// Post-conditions:
+			assertTrue(last > first);
+			// L'heure renvoyée ne devance pas celle du système
+			assertFalse(date(self).isAfter(Instant.now()));
+
+			// Invariant:
+			assertInvariant(self);
+		}
+	}
+
+	/**
+	 * Test method for method close
+	 *
+	 * Arrête les mises à jour de cette horloge: epochNanos() renvoie ensuite
+	 * toujours l'heure de la dernière mise à jour.
+	 */
+	@ParameterizedTest
+	@MethodSource("resolutionProvider")
+	public void testclose(Duration resolution) throws InterruptedException {
+		// Pré-conditions:
+		assumeTrue(!resolution.isZero() && !resolution.isNegative());
+		CoarseClock self = new CoarseClock(resolution);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		self.close();
+
+		// Post-conditions:
+		// Une mise à jour en cours lors de close() peut encore aboutir
+		Thread.sleep(5);
+		long stopped = self.epochNanos();
+		Thread.sleep(5);
+		assertEquals(stopped, self.epochNanos());
+		// close() peut être appelée plusieurs fois
+		self.close();
+		assertEquals(stopped, self.epochNanos());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Renvoie la date de l'heure courante de clock.
+	 */
+	private static Instant date(CoarseClock clock) {
+		return Instant.ofEpochSecond(0, clock.epochNanos());
+	}
+} // End of the test class for CoarseClock
@@ -0,0 +1,295 @@
+package sociald1.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static sociald1.test.DataProvider.LG_STREAM;
+import static sociald1.test.DataProvider.randInt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import sociald1.FanOutPolicy;
+import sociald1.NewsFeed;
+import sociald1.Post;
+import sociald1.PostCursor;
+import sociald1.User;
+import sociald1.UserRegistry;
+
+/**
+ * Test class for FanOutPolicy.
+ *
+ * Politique de diffusion hybride des Post vers les fils d'actualité
+ * matérialisés (voir User.enableTimeline(int)).
+ *
+ * Un auteur dont le nombre d'abonnés possédant un fil matérialisé dépasse
+ * getThreshold() n'est plus diffusé à l'écriture: ses Post sont fusionnés au
+ * moment de la lecture par NewsFeed. Les autres auteurs voient chacun de leurs
+ * Post inséré dans le fil matérialisé de leurs abonnés par User.addPost(String).
+ *
+ * Chaque test construit son propre réseau et rétablit le seuil initial: les
+ * User du DataProvider n'ont pas de fil matérialisé et ne sont jamais
+ * fusionnés à la lecture.
+ */
+public class TestFanOutPolicy {
+
+	public static Stream<Integer> thresholdProvider() {
+		return Stream.generate(() -> randInt(6)).limit(LG_STREAM);
+	}
+
+	public static Stream<Integer> threadNbProvider() {
+		return Stream.generate(() -> 2 + randInt(6)).limit(LG_STREAM / 10);
+	}
+
+	public void assertInvariant() {
+		// Put here the code to check the invariant:
+		// @invariant getThreshold() >= 0;
+		assertTrue(FanOutPolicy.getThreshold() >= 0);
+		// @invariant getPushedPostNb() >= 0;
+		assertTrue(FanOutPolicy.getPushedPostNb() >= 0);
+		// @invariant getPulledPostNb() >= 0;
+		assertTrue(FanOutPolicy.getPulledPostNb() >= 0);
+		// @invariant getMergedOnReadAuthorNb() >= 0;
+		assertTrue(FanOutPolicy.getMergedOnReadAuthorNb() >= 0);
+	}
+
+	/**
+	 * Test method for method setThreshold
+	 *
+	 * Modifie le seuil au-delà duquel un auteur est fusionné à la lecture.
+	 */
+	@ParameterizedTest
+	@MethodSource("thresholdProvider")
+	public void testsetThreshold(int newThreshold) {
+		// Invariant:
+		assertInvariant();
+
+		// Pré-conditions:
+		// @requires newThreshold >= 0;
+		assumeTrue(newThreshold >= 0);
+		User author = new User("Auteur", "secret");
+		User[] followers = followers(author, 1 + randInt(5));
+		postMany(author, 5);
+		int oldThreshold = FanOutPolicy.getThreshold();
+		int oldMergedNb = FanOutPolicy.getMergedOnReadAuthorNb();
+
+		try {
+			// Exécution:
+			FanOutPolicy.setThreshold(newThreshold);
+
+			// Post-conditions:
+			// @ensures getThreshold() == newThreshold;
+			assertEquals(newThreshold, FanOutPolicy.getThreshold());
+			// @ensures (\forall int i; i >= 0 && i < UserRegistry.size();
+			// UserRegistry.get(i).isMergedOnRead() ==
+			// mergeOnRead(UserRegistry.get(i).getTimelineFollowerNb()));
+			assertDecisions(newThreshold);
+			boolean onRead = followers.length > newThreshold;
+			assertEquals(onRead, author.isMergedOnRead());
+			for (User follower : followers) {
+				assertEquals(author.getPosts(), feed(follower));
+			}
+			postMany(author, 5);
+			assertEquals(onRead, author.isMergedOnRead());
+			// Chaque Post est servi exactement une fois, diffusé ou fusionné
+			for (User follower : followers) {
+				assertEquals(author.getPosts(), feed(follower));
+			}
+		} finally {
+			FanOutPolicy.setThreshold(oldThreshold);
+		}
+		// Retour à la diffusion à l'écriture
+		assertDecisions(oldThreshold);
+		assertFalse(author.isMergedOnRead());
+		postMany(author, 5);
+		assertFalse(author.isMergedOnRead());
+		assertEquals(oldMergedNb, FanOutPolicy.getMergedOnReadAuthorNb());
+		for (User follower : followers) {
+			assertEquals(author.getPosts(), feed(follower));
+		}
+
+		// Invariant:
+		assertInvariant();
+	}
+
+	/**
+	 * Test method for method getPushedPostNb
+	 *
+	 * Renvoie le nombre d'insertions de Post effectuées dans les fils matérialisés
+	 * des abonnés depuis la dernière remise à zéro des statistiques.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testgetPushedPostNb(int threadNb) throws InterruptedException {
+		// Invariant:
+		assertInvariant();
+
+		// Auteurs postant simultanément: aucune insertion n'est perdue
+		User[] authors = new User[threadNb];
+		int followerNb = 0;
+		for (int i = 0; i < threadNb; i++) {
+			authors[i] = new User("Auteur" + i, "secret");
+			followerNb += followers(authors[i], 1 + randInt(3)).length;
+		}
+		int postNb = 1000;
+		long oldPushed = FanOutPolicy.getPushedPostNb();
+		long oldPulled = FanOutPolicy.getPulledPostNb();
+
+		// Exécution:
+		postConcurrently(authors, postNb);
+
+		// Post-conditions:
+		assertEquals(oldPushed + (long) followerNb * postNb, FanOutPolicy.getPushedPostNb());
+		assertEquals(oldPulled, FanOutPolicy.getPulledPostNb());
+
+		// Invariant:
+		assertInvariant();
+	}
+
+	/**
+	 * Test method for method getPulledPostNb
+	 *
+	 * Renvoie le nombre de Post qui n'ont pas été diffusés à l'écriture parce que
+	 * leur auteur est fusionné à la lecture, depuis la dernière remise à zéro des
+	 * statistiques.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testgetPulledPostNb(int threadNb) throws InterruptedException {
+		// Invariant:
+		assertInvariant();
+
+		User[] authors = new User[threadNb];
+		for (int i = 0; i < threadNb; i++) {
+			authors[i] = new User("Auteur" + i, "secret");
+			followers(authors[i], 1 + randInt(3));
+		}
+		int postNb = 1000;
+		int oldThreshold = FanOutPolicy.getThreshold();
+		try {
+			FanOutPolicy.setThreshold(0);
+			long oldPushed = FanOutPolicy.getPushedPostNb();
+			long oldPulled = FanOutPolicy.getPulledPostNb();
+
+			// Exécution:
+			postConcurrently(authors, postNb);
+
+			// Post-conditions:
+			assertEquals(oldPushed, FanOutPolicy.getPushedPostNb());
+			assertEquals(oldPulled + (long) threadNb * postNb, FanOutPolicy.getPulledPostNb());
+		} finally {
+			FanOutPolicy.setThreshold(oldThreshold);
+		}
+		// Retour à la diffusion à l'écriture dès le rétablissement du seuil
+		for (User author : authors) {
+			assertFalse(author.isMergedOnRead());
+		}
+
+		// Invariant:
+		assertInvariant();
+	}
+
+	/**
+	 * Test method for method resetStatistics
+	 *
+	 * Remet à zéro les compteurs de Post diffusés et non diffusés.
+	 */
+	@ParameterizedTest
+	@MethodSource("thresholdProvider")
+	public void testresetStatistics(int newThreshold) {
+		// Invariant:
+		assertInvariant();
+
+		User author = new User("Auteur", "secret");
+		followers(author, 1 + randInt(3));
+		postMany(author, 1 + newThreshold);
+
+		// Exécution:
+		FanOutPolicy.resetStatistics();
+
+		// Post-conditions:
+		// @ensures getPushedPostNb() == 0;
+		assertEquals(0, FanOutPolicy.getPushedPostNb());
+		// @ensures getPulledPostNb() == 0;
+		assertEquals(0, FanOutPolicy.getPulledPostNb());
+
+		// Invariant:
+		assertInvariant();
+	}
+
+	/**
+	 * Vérifie que la décision de chaque User enregistré est celle du seuil
+	 * spécifié et que getMergedOnReadAuthorNb() les compte.
+	 */
+	private static void assertDecisions(int threshold) {
+		int mergedNb = 0;
+		for (int id = 0; id < UserRegistry.size(); id++) {
+			User u = UserRegistry.get(id);
+			assertEquals(u.getTimelineFollowerNb() > threshold, u.isMergedOnRead());
+			mergedNb += u.isMergedOnRead() ? 1 : 0;
+		}
+		assertEquals(mergedNb, FanOutPolicy.getMergedOnReadAuthorNb());
+	}
+
+	/**
+	 * Crée n abonnés de l'auteur spécifié possédant un fil matérialisé.
+	 */
+	private static User[] followers(User author, int n) {
+		User[] result = new User[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = new User("Abonné" + i, "secret");
+			result[i].addSubscription(author);
+			result[i].enableTimeline(1 + randInt(10));
+		}
+		return result;
+	}
+
+	private static void postMany(User author, int n) {
+		for (int i = 0; i < n; i++) {
+			author.addPost("Message n°" + i);
+		}
+	}
+
+	/**
+	 * Fait poster postNb Post à chacun des auteurs spécifiés, chacun depuis son
+	 * propre thread.
+	 */
+	private static void postConcurrently(User[] authors, int postNb) throws InterruptedException {
+		Thread[] threads = new Thread[authors.length];
+		CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < authors.length; i++) {
+			User author = authors[i];
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				postMany(author, postNb);
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+	}
+
+	/**
+	 * Renvoie les Post du fil d'actualité de u, parcouru par un PostCursor.
+	 */
+	private static List<Post> feed(User u) {
+		List<Post> result = new ArrayList<>();
+		PostCursor cursor = new NewsFeed(u).cursor();
+		while (cursor.hasNext()) {
+			result.add(cursor.next());
+		}
+		return result;
+	}
+} // End of the test class for FanOutPolicy
@@ -0,0 +1,480 @@
+package sociald1.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sociald1.test.DataProvider.randInt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import sociald1.Journal;
+import sociald1.Post;
+import sociald1.User;
+import sociald1.UserRegistry;
+
+/**
+ * Test class for Journal.
+ *
+ * Journal persistant des modifications du réseau social Microdon: à
+ * l'ouverture, les enregistrements existants sont rejoués, ce qui recrée les
+ * User avec leurs identifiants, leurs dates d'inscription, leurs Post, leurs
+ * "likes" et leurs abonnements; un enregistrement incomplet ou corrompu termine
+ * la relecture et est écrasé par les ajouts suivants.
+ *
+ * Un journal ne peut être ouvert qu'avant la création du premier User: chaque
+ * scénario est exécuté par une JVM distincte (voir main(String[])), qui écrit
+ * sur sa sortie standard l'état du réseau (voir digest()).
+ */
+public class TestJournal {
+
+	public static Stream<Long> seedProvider() {
+		return Stream.generate(() -> (long) randInt(Integer.MAX_VALUE)).limit(4);
+	}
+
+	public static Stream<Integer> threadNbProvider() {
+		return Stream.generate(() -> 2 + randInt(7)).limit(3);
+	}
+
+	public static Stream<Integer> textSizeProvider() {
+		return Stream.of(1 << 20, 3 << 19);
+	}
+
+	public static Stream<Arguments> seedAndTornProvider() {
+		return Stream.of(false, true, false, true).map(torn -> Arguments.of((long) randInt(Integer.MAX_VALUE), torn));
+	}
+
+	/**
+	 * Séparateur, dans la sortie de la phase "write", entre l'état précédant la
+	 * dernière modification et l'état final.
+	 */
+	static final String LAST_CHANGE = "--\n";
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Test method for method open
+	 *
+	 * Ouvre le journal du répertoire spécifié: les enregistrements existants sont
+	 * rejoués, puis toutes les modifications ultérieures du réseau sont
+	 * journalisées jusqu'à close().
+	 */
+	@ParameterizedTest
+	@MethodSource("seedProvider")
+	public void testopen(long seed) throws Exception {
+		// Exécution:
+		String[] written = run("write", dir.toString(), Long.toString(seed)).split(LAST_CHANGE);
+		String replayed = run("read", dir.toString());
+
+		// Post-conditions:
+		// Réseau recréé à l'identique: identifiants, dates, textes, "likes" et
+		// abonnements
+		assertEquals(written[1], replayed);
+		// Rouvrir le journal ne le modifie pas
+		assertEquals(replayed, run("read", dir.toString()));
+	}
+
+	/**
+	 * Test method for method open, sur un journal dont le dernier enregistrement
+	 * est incomplet (torn) ou corrompu
+	 *
+	 * La relecture s'arrête avant l'enregistrement invalide, qui est écrasé par
+	 * les ajouts suivants.
+	 */
+	@ParameterizedTest
+	@MethodSource("seedAndTornProvider")
+	public void testopenCorrupted(long seed, boolean torn) throws Exception {
+		// Pré-conditions:
+		String[] written = run("write", dir.toString(), Long.toString(seed)).split(LAST_CHANGE);
+		assertNotEquals(written[0], written[1]);
+		corruptLastRecord(dir.resolve("journal-00000000.seg"), torn);
+
+		// Exécution:
+		String replayed = run("read", dir.toString());
+
+		// Post-conditions:
+		assertEquals(written[0], replayed);
+		// Les ajouts suivants remplacent l'enregistrement invalide
+		String extended = run("extend", dir.toString());
+		assertTrue(extended.startsWith(written[0].substring(0, written[0].lastIndexOf("User "))));
+		assertEquals(extended, run("read", dir.toString()));
+	}
+
+	/**
+	 * Test method for method flush
+	 *
+	 * Renvoie un CompletableFuture complété lorsque tous les enregistrements
+	 * ajoutés avant l'appel sont écrits sur disque: les modifications de
+	 * plusieurs threads, chacun attendant les siennes, sont écrites par groupes et
+	 * rejouées dans leur ordre d'ajout.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testflush(int threadNb) throws Exception {
+		// Exécution:
+		String written = run("concurrent", dir.toString(), Integer.toString(threadNb));
+
+		// Post-conditions:
+		assertTrue(written.startsWith(threadNb * 200 + " flush\n"));
+		assertEquals(written.substring(written.indexOf('\n') + 1), run("read", dir.toString()));
+	}
+
+	/**
+	 * Test method for method open, après des créations simultanées de User
+	 *
+	 * Les User créés simultanément par plusieurs threads sont journalisés dans
+	 * l'ordre de leurs identifiants et rejoués avec les mêmes identifiants.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testopenConcurrentUsers(int threadNb) throws Exception {
+		// Pré-conditions:
+		int userNb = 1000;
+		String written = run("users", dir.toString(), Integer.toString(threadNb), Integer.toString(userNb));
+		assertTrue(written.startsWith(threadNb * userNb + " User\n"), written.substring(0, 40));
+
+		// Exécution:
+		String replayed = run("read", dir.toString());
+
+		// Post-conditions:
+		assertEquals(written.substring(written.indexOf('\n') + 1), replayed);
+	}
+
+	/**
+	 * Test method for method flush, lorsque l'écriture échoue
+	 *
+	 * Le CompletableFuture est complété exceptionnellement par
+	 * l'UncheckedIOException de l'écriture; les enregistrements sont réécrits par
+	 * une écriture suivante réussie.
+	 */
+	@ParameterizedTest
+	@MethodSource("textSizeProvider")
+	public void testflushFailure(int textSize) throws Exception {
+		// Pré-conditions:
+		// Assez de Post pour remplir le premier segment
+		int postNb = Journal.SEGMENT_SIZE / textSize + 2;
+
+		// Exécution:
+		String written = run("fail", dir.toString(), Integer.toString(textSize), Integer.toString(postNb));
+
+		// Post-conditions:
+		String summary = "User 0: " + postNb + " Post, ";
+		assertTrue(written.startsWith("flush UncheckedIOException\nsync UncheckedIOException\nflush OK\n" + summary),
+				written);
+		assertEquals(written.substring(written.indexOf(summary)), run("summary", dir.toString()));
+	}
+
+	/**
+	 * Rend invalide le dernier enregistrement du segment spécifié: sa longueur
+	 * dépasse la fin du segment si torn est true, son contenu ne correspond plus
+	 * à sa somme de contrôle sinon.
+	 */
+	private static void corruptLastRecord(Path segment, boolean torn) throws IOException {
+		try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+			int last = -1;
+			for (int pos = 0; pos + 8 <= buf.limit() && buf.getInt(pos) != 0; pos += 8 + buf.getInt(pos)) {
+				last = pos;
+			}
+			assertTrue(last >= 0);
+			if (torn) {
+				buf.putInt(last, buf.limit());
+			} else {
+				int end = last + 8 + buf.getInt(last) - 1;
+				buf.put(end, (byte) ~buf.get(end));
+			}
+		}
+	}
+
+	/**
+	 * Exécute la phase spécifiée de main(String[]) dans une nouvelle JVM et
+	 * renvoie sa sortie standard.
+	 */
+	static String run(String... args) throws IOException, InterruptedException {
+		return run(TestJournal.class, args);
+	}
+
+	/**
+	 * Exécute la méthode main de la classe spécifiée dans une nouvelle JVM, avec
+	 * les arguments spécifiés, et renvoie sa sortie standard.
+	 */
+	static String run(Class<?> main, String... args) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(main.getName());
+		command.addAll(Arrays.asList(args));
+		Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String out = new String(child.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+		assertEquals(0, child.waitFor(), out);
+		return out;
+	}
+
+	/**
+	 * Phases exécutées par une JVM distincte, sur le journal du répertoire args[1]:
+	 * <ul>
+	 * <li>write: crée un réseau aléatoire de graine args[2], écrit son état,
+	 * LAST_CHANGE, puis son état après une dernière modification</li>
+	 * <li>read: rejoue le journal et écrit l'état obtenu</li>
+	 * <li>extend: rejoue le journal, ajoute un User et un Post, et écrit l'état
+	 * obtenu</li>
+	 * <li>concurrent: args[2] auteurs postent, "likent" et s'abonnent
+	 * simultanément, chacun attendant par flush() que chacune de ses
+	 * modifications soit durable; écrit le nombre de CompletableFuture complétés
+	 * puis l'état obtenu</li>
+	 * <li>users: args[2] threads créent simultanément chacun args[3] User, qui
+	 * postent chacun un Post; écrit le nombre de User puis l'état obtenu</li>
+	 * <li>fail: rend impossible la création du deuxième segment et le remplit de
+	 * args[3] Post de args[2] caractères;
+	 * écrit le résultat de flush() et de sync(), puis de flush() une fois la
+	 * création possible, puis le résumé du réseau (voir summary())</li>
+	 * <li>summary: rejoue le journal et écrit le résumé du réseau</li>
+	 * </ul>
+	 */
+	public static void main(String[] args) throws Exception {
+		try (Journal journal = Journal.open(Path.of(args[1]))) {
+			switch (args[0]) {
+			case "concurrent":
+				System.out.print(postConcurrently(journal, Integer.parseInt(args[2])) + " flush\n");
+				break;
+			case "users":
+				createConcurrently(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+				System.out.print(UserRegistry.size() + " User\n");
+				break;
+			case "fail":
+				failSegment(journal, Path.of(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+				System.out.print(summary());
+				return;
+			case "summary":
+				System.out.print(summary());
+				return;
+			case "write":
+				build(new Random(Long.parseLong(args[2])));
+				System.out.print(digest());
+				System.out.print(LAST_CHANGE);
+				UserRegistry.get(0).addPost("Dernière modification 😀");
+				break;
+			case "extend":
+				new User("Nouveau", "secret").addPost("Après la relecture");
+				break;
+			default:
+				break;
+			}
+			journal.sync();
+			System.out.print(digest());
+		}
+	}
+
+	/**
+	 * Fait poster, "liker" et s'abonner threadNb auteurs, chacun depuis son propre
+	 * thread, en attendant après chaque modification qu'elle soit durable, et
+	 * renvoie le nombre de CompletableFuture obtenus, tous complétés normalement.
+	 */
+	private static int postConcurrently(Journal journal, int threadNb) throws InterruptedException {
+		User[] authors = new User[threadNb];
+		for (int i = 0; i < threadNb; i++) {
+			authors[i] = new User("Auteur" + i, "secret");
+		}
+		List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+		Thread[] threads = new Thread[threadNb];
+		for (int i = 0; i < threadNb; i++) {
+			int me = i;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 200; j++) {
+					Post p = authors[me].addPost("Message n°" + j + " de " + me);
+					p.addLikeFrom(authors[(me + 1 + j) % threadNb]);
+					authors[me].addSubscription(authors[(me + j) % threadNb]);
+					CompletableFuture<Void> f = journal.flush();
+					futures.add(f);
+					f.join();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).join();
+		return futures.size();
+	}
+
+	/**
+	 * Fait créer userNb User à chacun de threadNb threads simultanément; chaque
+	 * User créé poste un Post.
+	 */
+	private static void createConcurrently(int threadNb, int userNb) throws InterruptedException {
+		Thread[] threads = new Thread[threadNb];
+		CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < threadNb; i++) {
+			int me = i;
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int j = 0; j < userNb; j++) {
+					new User("Inscrit" + me + "-" + j, "secret").addPost("Bonjour de " + me + "-" + j);
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+	}
+
+	/**
+	 * Remplit le premier segment du journal spécifié de postNb Post de textSize
+	 * caractères alors qu'un répertoire occupe
+	 * le chemin du deuxième, puis supprime ce répertoire; écrit le résultat de
+	 * flush() et de sync() avant la suppression, puis celui de flush() après.
+	 */
+	private static void failSegment(Journal journal, Path dir, int textSize, int postNb) throws IOException {
+		Path blocker = dir.resolve("journal-00000001.seg");
+		Files.createDirectory(blocker);
+		User author = new User("Auteur", "secret");
+		String text = "a".repeat(textSize);
+		for (int i = 0; i < postNb; i++) {
+			author.addPost(text + i);
+		}
+		try {
+			journal.flush().join();
+			System.out.print("flush OK\n");
+		} catch (CompletionException e) {
+			System.out.print("flush " + e.getCause().getClass().getSimpleName() + "\n");
+		}
+		try {
+			journal.sync();
+			System.out.print("sync OK\n");
+		} catch (UncheckedIOException e) {
+			System.out.print("sync " + e.getClass().getSimpleName() + "\n");
+		}
+		// Les enregistrements en attente sont réécrits par l'écriture suivante
+		Files.delete(blocker);
+		journal.flush().join();
+		System.out.print("flush OK\n");
+	}
+
+	/**
+	 * Crée un réseau aléatoire: des User aux noms et textes hors ISO-8859-1, y
+	 * compris des demi-caractères isolés, des Post, des "likes", des abonnements
+	 * et des désabonnements.
+	 */
+	static void build(Random random) {
+		String[] words = { "Zoë", "Юлия", "東京", "😀", "\uD800", "x\uDC00", "café", "mot" };
+		int userNb = 2 + random.nextInt(20);
+		User[] users = new User[userNb];
+		for (int i = 0; i < userNb; i++) {
+			users[i] = new User(words[random.nextInt(words.length)] + i, "mdp" + words[random.nextInt(words.length)]);
+		}
+		for (int n = random.nextInt(200); n > 0; n--) {
+			User u = users[random.nextInt(userNb)];
+			User v = users[random.nextInt(userNb)];
+			switch (random.nextInt(4)) {
+			case 0:
+				StringBuilder text = new StringBuilder();
+				for (int w = 1 + random.nextInt(5); w > 0; w--) {
+					text.append(words[random.nextInt(words.length)]).append(' ');
+				}
+				u.addPost(text.toString());
+				break;
+			case 1:
+				if (v.getPostNb() > 0) {
+					v.getPost(random.nextInt(v.getPostNb())).addLikeFrom(u);
+				}
+				break;
+			case 2:
+				u.addSubscription(v);
+				break;
+			default:
+				u.removeSubscription(v);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Renvoie une description exacte, en ASCII, de l'état du réseau: pour chaque
+	 * User, ses nom, mot de passe, date d'inscription et abonnements, puis pour
+	 * chacun de ses Post, sa date, son texte et ses "likers".
+	 */
+	static String digest() {
+		StringBuilder out = new StringBuilder();
+		for (int id = 0; id < UserRegistry.size(); id++) {
+			User u = UserRegistry.get(id);
+			out.append("User ").append(id).append(' ').append(escape(u.getName())).append(' ')
+					.append(escape(u.getPassword())).append(' ').append(u.getRegistrationDate()).append(" -> ")
+					.append(ids(u.getSubscriptions())).append('\n');
+			for (Post p : u.getPosts()) {
+				out.append("  ").append(p.getDate()).append(' ').append(escape(p.getText())).append(" <- ")
+						.append(ids(p.getLikers())).append('\n');
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Renvoie un résumé de l'état du réseau, pour les réseaux aux textes trop
+	 * longs pour digest(): pour chaque User, son nombre de Post et une somme des
+	 * codes de hachage de leurs textes.
+	 */
+	static String summary() {
+		StringBuilder out = new StringBuilder();
+		for (int id = 0; id < UserRegistry.size(); id++) {
+			User u = UserRegistry.get(id);
+			long hash = 0;
+			for (Post p : u.getPosts()) {
+				hash = 31 * hash + p.getText().hashCode();
+			}
+			out.append("User ").append(id).append(": ").append(u.getPostNb()).append(" Post, ").append(hash)
+					.append('\n');
+		}
+		return out.toString();
+	}
+
+	private static String ids(Iterable<User> users) {
+		List<Integer> ids = new ArrayList<>();
+		for (User u : users) {
+			ids.add(u.getId());
+		}
+		ids.sort(null);
+		return ids.toString();
+	}
+
+	static String escape(String s) {
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x20 && c < 0x7F && c != '\\') {
+				out.append(c);
+			} else {
+				out.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return out.toString();
+	}
+} // End of the test class for Journal
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -18,8 +20,12 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import sociald1.FeedPage;
 import sociald1.NewsFeed;
+import sociald1.PageToken;
 import sociald1.Post;
+import sociald1.PostCursor;
+import sociald1.PostIndex;
 import sociald1.User;
 
 import static sociald1.test.DataProvider.LG_STREAM;
@@ -27,6 +33,7 @@ import static sociald1.test.DataProvider.postSupplier;
 import static sociald1.test.DataProvider.stringSupplier;
 import static sociald1.test.DataProvider.userSupplier;
 import static sociald1.test.DataProvider.newsFeedSupplier;
+import static sociald1.test.DataProvider.randInt;
 
 /**
  * Test class for NewsFeed.
@@ -41,11 +48,16 @@ import static sociald1.test.DataProvider.newsFeedSupplier;
  * l'appel à la méthode previous() permet d'aller vers les Post plus récents.
  * 
  * Chaque itération utilise les méthodes d'itération des User concernés par ce
- * NewsFeed. Lorsqu'une itération a été initié par un appel à la méthode
- * startIteration() ou au constructeur, aucun des utilisateurs ne doit poster de
- * nouveaux messages. Si cette condition n'est pas respectée les résultats
- * obtenus sont imprévisibles. Cependant, un nouvel appel à startIteration()
- * permet de rétablir un fonctionnement normal pour une nouvelle itération.
+ * NewsFeed. Une itération parcourt un instantané du fil d'actualité pris par
+ * startIteration() ou par le constructeur, sans copier les listes de Post: les
+ * Post ajoutés ensuite par les utilisateurs ne sont pas parcourus et ne
+ * modifient pas les index de l'itération, qui reste donc correcte même si des
+ * utilisateurs postent pendant qu'elle se déroule. Un nouvel appel à
+ * startIteration() permet d'inclure ces nouveaux Post dans une nouvelle
+ * itération. Tant qu'aucun Post n'a été ajouté depuis le démarrage de
+ * l'itération, size() est le nombre de Post de l'instantané; dans le cas
+ * contraire, hasNext() est false dès que tous les Post de l'instantané ont été
+ * parcourus.
  */
 public class TestNewsFeed {
 
@@ -584,4 +596,420 @@ public class TestNewsFeed {
 		// Invariant:
 		assertInvariant(self);
 	}
+
+	/**
+	 * Test method for method cursor
+	 *
+	 * Renvoie un nouveau curseur sur le fil d'actualité de getUser(), placé avant
+	 * le Post le plus récent. Ce curseur porte sa propre position: il est
+	 * indépendant de l'itération de ce NewsFeed, des méthodes d'itération des User
+	 * et des autres curseurs.
+	 */
+	@ParameterizedTest
+	@MethodSource("newsFeedProvider")
+	public void testcursor(NewsFeed self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		PostCursor result = self.cursor();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.nextIndex() == 0;
+		assertEquals(0, result.nextIndex());
+		// @ensures \result.lastIndex() == -1;
+		assertEquals(-1, result.lastIndex());
+		// @ensures \result.hasNext() <==> size() > 0;
+		assertEquals(self.size() > 0, result.hasNext());
+		// Deux curseurs parcourent les mêmes Post sans interférer
+		PostCursor other = self.cursor();
+		while (result.hasNext()) {
+			Post p = result.next();
+			assertTrue(other.hasNext());
+			assertEquals(p, other.next());
+			assertEquals(result.lastUser(), other.lastUser());
+			assertTrue(result.lastUser().getPosts().contains(p));
+		}
+		assertFalse(other.hasNext());
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method page
+	 *
+	 * Renvoie une page d'au plus limit Post du fil d'actualité du User spécifié,
+	 * commençant immédiatement après le Post désigné par le jeton spécifié, ou au
+	 * Post le plus récent si ce jeton est null.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testpage(User aUser) {
+		assumeTrue(aUser != null);
+
+		// Pré-conditions:
+		// @requires aUser != null;
+		// @requires limit > 0;
+		int limit = 1 + randInt(50);
+
+		// Oldies:
+		NewsFeed feed = new NewsFeed(aUser);
+		int total = feed.size();
+		PageToken after = null;
+		int count = 0;
+		Post last = null;
+
+		do {
+			// Exécution:
+			FeedPage result = NewsFeed.page(aUser, after, limit);
+
+			// Post-conditions:
+			// @ensures \result != null;
+			assertNotNull(result);
+			// @ensures \result.getPosts().size() <= limit;
+			assertTrue(result.getPosts().size() <= limit);
+			// @ensures \result.hasMore() ==> \result.getPosts().size() == limit;
+			assertTrue(!result.hasMore() || result.getPosts().size() == limit);
+			assertEquals(result.getPosts().size(), result.getAuthors().size());
+			for (int i = 0; i < result.getPosts().size(); i++) {
+				Post p = result.getPosts().get(i);
+				// @ensures (\forall Post p; \result.getPosts().contains(p);
+				// after == null || !p.getDate().isAfter(after.getDate()));
+				assertTrue(last == null || !p.getDate().isAfter(last.getDate()));
+				assertTrue(result.getAuthors().get(i).getPosts().contains(p));
+				last = p;
+			}
+			count += result.getPosts().size();
+			after = result.getNextToken();
+			if (after != null) {
+				assertEquals(after, PageToken.decode(after.encode()));
+			}
+			if (!result.hasMore()) {
+				break;
+			}
+		} while (true);
+
+		// Toutes les pages réunies contiennent tous les Post du fil
+		assertEquals(total, count);
+	}
+
+	/**
+	 * Test method for method topLiked
+	 *
+	 * Renvoie les k Post de ce fil d'actualité datés de since ou après qui ont le
+	 * plus de "likes", du plus "liké" au moins "liké".
+	 */
+	@ParameterizedTest
+	@MethodSource("newsFeedProvider")
+	public void testtopLiked(NewsFeed self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires k >= 0;
+		int k = randInt(20);
+		// @requires since != null;
+		List<Post> feed = new ArrayList<>();
+		PostCursor cursor = self.cursor();
+		while (cursor.hasNext()) {
+			feed.add(cursor.next());
+		}
+		Instant since = feed.isEmpty() || randInt(4) == 0 ? Instant.EPOCH
+				: feed.get(randInt(feed.size())).getDate();
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+		List<Integer> likes = new ArrayList<>();
+		for (Post p : feed) {
+			if (!p.getDate().isBefore(since)) {
+				likes.add(p.getLikeNumber());
+			}
+		}
+		likes.sort(Collections.reverseOrder());
+
+		// Exécution:
+		List<Post> result = self.topLiked(k, since);
+
+		// Post-conditions:
+		// @ensures \result != null && \result.size() <= k;
+		assertNotNull(result);
+		assertEquals(Math.min(k, likes.size()), result.size());
+		for (int i = 0; i < result.size(); i++) {
+			Post p = result.get(i);
+			assertTrue(feed.contains(p));
+			// @ensures (\forall Post p; \result.contains(p); !p.getDate().isBefore(since));
+			assertFalse(p.getDate().isBefore(since));
+			// @ensures (\forall int i; i >= 1 && i < \result.size();
+			// \result.get(i).getLikeNumber() <= \result.get(i - 1).getLikeNumber());
+			assertEquals(likes.get(i).intValue(), p.getLikeNumber());
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method search
+	 *
+	 * Renvoie au plus limit Post de ce fil d'actualité contenant tous les termes
+	 * de la requête spécifiée, du plus récent au plus ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("newsFeedProvider")
+	public void testsearch(NewsFeed self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires query != null;
+		List<Post> feed = new ArrayList<>();
+		PostCursor cursor = self.cursor();
+		while (cursor.hasNext()) {
+			feed.add(cursor.next());
+		}
+		assumeTrue(!feed.isEmpty());
+		String text = feed.get(randInt(feed.size())).getText();
+		assumeTrue(PostIndex.tokenize(text).length > 0);
+		String[] words = text.split(" ");
+		int start = randInt(words.length);
+		String query = words[start];
+		// @requires limit >= 0;
+		int limit = randInt(LG_STREAM);
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		List<Post> result = self.search(query, limit);
+
+		// Post-conditions:
+		// @ensures \result != null && \result.size() <= limit;
+		assertNotNull(result);
+		assertTrue(result.size() <= limit);
+		for (int i = 0; i < result.size(); i++) {
+			Post p = result.get(i);
+			assertTrue(feed.contains(p));
+			assertTrue(p.getText().toLowerCase().contains(query.toLowerCase()));
+			// @ensures (\forall int i; i >= 1 && i < \result.size();
+			// !\result.get(i).isAfter(\result.get(i - 1)));
+			assertTrue(i == 0 || !p.isAfter(result.get(i - 1)));
+		}
+		// Une requête sans terme ne trouve aucun Post
+		if (PostIndex.tokenize(query).length == 0) {
+			assertTrue(result.isEmpty());
+		} else if (limit >= feed.size()) {
+			// Le Post dont est extraite la requête est trouvé si limit le permet
+			assertTrue(result.size() >= 1);
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method searchPhrase
+	 *
+	 * Renvoie au plus limit Post de ce fil d'actualité contenant les termes de
+	 * l'expression spécifiée consécutivement et dans cet ordre, du plus récent au
+	 * plus ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("newsFeedProvider")
+	public void testsearchPhrase(NewsFeed self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires phrase != null;
+		List<Post> feed = new ArrayList<>();
+		PostCursor cursor = self.cursor();
+		while (cursor.hasNext()) {
+			feed.add(cursor.next());
+		}
+		assumeTrue(!feed.isEmpty());
+		String text = feed.get(randInt(feed.size())).getText();
+		assumeTrue(PostIndex.tokenize(text).length > 0);
+		String[] words = text.split(" ");
+		int start = randInt(words.length);
+		String phrase = String.join(" ", Arrays.copyOfRange(words, start, Math.min(words.length, start + 2)));
+		// @requires limit >= 0;
+		int limit = randInt(LG_STREAM);
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		List<Post> result = self.searchPhrase(phrase, limit);
+
+		// Post-conditions:
+		// @ensures \result != null && \result.size() <= limit;
+		assertNotNull(result);
+		assertTrue(result.size() <= limit);
+		for (int i = 0; i < result.size(); i++) {
+			Post p = result.get(i);
+			assertTrue(feed.contains(p));
+			assertTrue(p.getText().toLowerCase().contains(phrase.toLowerCase()));
+			// @ensures (\forall int i; i >= 1 && i < \result.size();
+			// !\result.get(i).isAfter(\result.get(i - 1)));
+			assertTrue(i == 0 || !p.isAfter(result.get(i - 1)));
+		}
+		// Une expression sans terme ne trouve aucun Post
+		if (PostIndex.tokenize(phrase).length == 0) {
+			assertTrue(result.isEmpty());
+		} else if (limit >= feed.size()) {
+			// Le Post dont est extraite l'expression est trouvé si limit le permet
+			assertTrue(result.size() >= 1);
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	public static Stream<Integer> threadNbProvider() {
+		return Stream.generate(() -> 2 + randInt(6)).limit(LG_STREAM / 10);
+	}
+
+	/**
+	 * Test method for method search, sur des Post publiés simultanément
+	 *
+	 * Des auteurs publiant simultanément sont indexés dans un ordre qui peut
+	 * différer de celui des dates de création: les résultats restent les limit
+	 * Post les plus récents, du plus récent au plus ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testsearchConcurrent(int threadNb) throws InterruptedException {
+		User reader = new User("Lecteur", "secret");
+		User[] authors = new User[threadNb];
+		for (int i = 0; i < threadNb; i++) {
+			authors[i] = new User("Auteur" + i, "secret");
+			reader.addSubscription(authors[i]);
+		}
+		// Terme propre à ce test: seuls les Post ci-dessous le contiennent
+		String term = "concurrent" + reader.getId();
+		int postNb = 200;
+		Thread[] threads = new Thread[threadNb];
+		for (int i = 0; i < threadNb; i++) {
+			User author = authors[i];
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < postNb; j++) {
+					author.addPost(term + " n°" + j);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		List<Post> all = new ArrayList<>();
+		for (User author : authors) {
+			all.addAll(author.getPosts());
+		}
+		all.sort((p, q) -> p.isAfter(q) ? -1 : q.isAfter(p) ? 1 : 0);
+		int limit = randInt(threadNb * postNb + 10);
+		NewsFeed self = new NewsFeed(reader);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		List<Post> result = self.search(term, limit);
+
+		// Post-conditions:
+		assertEquals(Math.min(limit, all.size()), result.size());
+		for (int i = 0; i < result.size(); i++) {
+			// Les Post les plus récents, du plus récent au plus ancien
+			assertFalse(all.get(i).isAfter(result.get(i)) || result.get(i).isAfter(all.get(i)));
+			assertTrue(i == 0 || !result.get(i).isAfter(result.get(i - 1)));
+		}
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	public static Stream<Integer> postNbProvider() {
+		return Stream.generate(() -> 1 + randInt(50)).limit(LG_STREAM / 10);
+	}
+
+	/**
+	 * Test method for method search, sur des Post importés à une date passée
+	 *
+	 * Un Post importé par User.addPost(String, Instant) est indexé après des Post
+	 * plus récents: il est classé selon sa date, non selon son ordre d'indexation.
+	 */
+	@ParameterizedTest
+	@MethodSource("postNbProvider")
+	public void testsearchImported(int postNb) {
+		User reader = new User("Lecteur", "secret");
+		User author = new User("Auteur", "secret");
+		User archive = new User("Archive", "secret");
+		reader.addSubscription(author);
+		reader.addSubscription(archive);
+		// Terme propre à ce test: seuls les Post ci-dessous le contiennent
+		String term = "importe" + reader.getId();
+		Instant past = author.getRegistrationDate().minusSeconds(1 + randInt(1000));
+		List<Post> recent = new ArrayList<>();
+		for (int i = 0; i < postNb; i++) {
+			recent.add(0, author.addPost(term + " récent n°" + i));
+		}
+		List<Post> imported = new ArrayList<>();
+		for (int i = 0; i < postNb; i++) {
+			imported.add(0, archive.addPost(term + " importé n°" + i, past.plusMillis(i)));
+		}
+		NewsFeed self = new NewsFeed(reader);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		List<Post> result = self.search(term, 2 * postNb);
+
+		// Post-conditions:
+		// Les Post récents d'abord, puis les Post importés, du plus récent au plus
+		// ancien
+		List<Post> expected = new ArrayList<>(recent);
+		expected.addAll(imported);
+		assertEquals(expected, result);
+		// Une limite inférieure ne retient que les Post récents
+		assertEquals(recent, self.search(term, postNb));
+
+		// Invariant:
+		assertInvariant(self);
+	}
 } // End of the test class for NewsFeed
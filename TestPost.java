@@ -10,6 +10,7 @@ import static sociald1.test.DataProvider.LG_STREAM;
 import static sociald1.test.DataProvider.postSupplier;
 import static sociald1.test.DataProvider.stringSupplier;
 import static sociald1.test.DataProvider.userSupplier;
+import static sociald1.test.DataProvider.randInt;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -18,6 +19,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.params.ParameterizedTest;
@@ -193,6 +195,102 @@ public class TestPost {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method getTextView
+	 *
+	 * Renvoie une vue en lecture seule du texte de ce Post.
+	 */
+	@ParameterizedTest
+	@MethodSource("postProvider")
+	public void testgetTextView(Post self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		CharSequence result = self.getTextView();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.toString().equals(getText());
+		String text = self.getText();
+		assertEquals(text, result.toString());
+		assertEquals(text.length(), result.length());
+		for (int i = 0; i < text.length(); i++) {
+			assertEquals(text.charAt(i), result.charAt(i));
+		}
+		int from = randInt(text.length() + 1);
+		assertEquals(text.substring(from), result.subSequence(from, text.length()).toString());
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Textes hors latin1: caractères accentués, cyrilliques et chinois, paires de
+	 * substitution (emoji) et substituts isolés, invalides en UTF-8 et UTF-16.
+	 */
+	public static Stream<String> unicodeStringProvider() {
+		String[] pieces = { "a", "é", "ÿ", "€", "юлия", "東京", "😀", "\uD800", "\uDFFF", "\uDBFF\uDC00", " " };
+		return Stream.generate(() -> {
+			StringBuilder text = new StringBuilder();
+			int n = randInt(20);
+			for (int i = 0; i < n; i++) {
+				text.append(pieces[randInt(pieces.length)]);
+			}
+			return text.toString();
+		}).limit(LG_STREAM);
+	}
+
+	/**
+	 * Test method for methods getText and getTextView, sur des textes hors latin1
+	 *
+	 * Le texte d'un Post, rangé hors du tas Java, est restitué à l'identique, y
+	 * compris un substitut isolé qu'un encodage UTF-8 remplacerait.
+	 */
+	@ParameterizedTest
+	@MethodSource("unicodeStringProvider")
+	public void testgetTextUnicode(String text) {
+		// Pré-conditions:
+		// @requires text != null;
+		assumeTrue(text != null);
+		Post self = new Post(text);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		String result = self.getText();
+		CharSequence view = self.getTextView();
+
+		// Post-conditions:
+		// @ensures getText().equals(text);
+		assertEquals(text, result);
+		// @ensures \result.toString().equals(getText());
+		assertEquals(text, view.toString());
+		assertEquals(text.length(), view.length());
+		for (int i = 0; i < text.length(); i++) {
+			assertEquals(text.charAt(i), view.charAt(i));
+		}
+		int from = randInt(text.length() + 1);
+		assertEquals(text.substring(from), view.subSequence(from, text.length()).toString());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method getLikeNumber
 	 *
@@ -308,6 +406,82 @@ public class TestPost {
 		assertInvariant(self);
 	}
 
+	public static Stream<Integer> threadNbProvider() {
+		return Stream.generate(() -> 2 + randInt(7)).limit(LG_STREAM / 10);
+	}
+
+	// "Likers" partagés par les tests concurrents: assez nombreux pour qu'un Post
+	// populaire fragmente l'ensemble de ses "likers"
+	private static User[] likerPool;
+
+	private static synchronized User[] likerPool() {
+		if (likerPool == null) {
+			likerPool = new User[2048];
+			for (int i = 0; i < likerPool.length; i++) {
+				likerPool[i] = new User("Liker" + i, "secret");
+			}
+		}
+		return likerPool;
+	}
+
+	/**
+	 * Test method for method addLikeFrom, appelée simultanément par plusieurs
+	 * threads
+	 *
+	 * Chaque thread ajoute les "likes" d'une partie des User, les parties se
+	 * recouvrant: un "like" n'est compté qu'une fois, et aucun n'est perdu.
+	 */
+	@ParameterizedTest
+	@MethodSource("threadNbProvider")
+	public void testaddLikeFromConcurrent(int threadNb) throws InterruptedException {
+		Post self = new Post("Post populaire");
+		User[] pool = likerPool();
+		int likerNb = randInt(pool.length + 1);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		int[] addedNb = new int[threadNb];
+		Thread[] threads = new Thread[threadNb];
+		CountDownLatch start = new CountDownLatch(1);
+		for (int t = 0; t < threadNb; t++) {
+			int first = t * likerNb / (2 * threadNb);
+			int me = t;
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				// Chaque thread parcourt plus de la moitié des likers à partir de first
+				for (int i = first; i < likerNb; i++) {
+					if (self.addLikeFrom(pool[i])) {
+						addedNb[me]++;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		// Post-conditions:
+		assertEquals(likerNb, Arrays.stream(addedNb).sum());
+		assertEquals(likerNb, self.getLikeNumber());
+		Set<User> likers = self.getLikers();
+		assertEquals(likerNb, likers.size());
+		for (int i = 0; i < pool.length; i++) {
+			assertEquals(i < likerNb, self.hasLikeFrom(pool[i]));
+			assertEquals(i < likerNb, likers.contains(pool[i]));
+		}
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method getLikers
 	 *
@@ -351,6 +525,98 @@ public class TestPost {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method getLikersView
+	 *
+	 * Renvoie une vue non modifiable de l'ensemble des "likers" de ce Post.
+	 */
+	@ParameterizedTest
+	@MethodSource("postProvider")
+	public void testgetLikersView(Post self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		Set<User> result = self.getLikersView();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.equals(getLikers());
+		assertEquals(self.getLikers(), result);
+		for (User u : result) {
+			assertTrue(self.hasLikeFrom(u));
+		}
+		// Test de la non modifiabilité:
+		try {
+			result.add(null);
+			fail("La vue doit être non modifiable");
+		} catch (UnsupportedOperationException e) {
+			// Comportement attendu
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method getLikersAmongSubscriptionsOf
+	 *
+	 * Renvoie une nouvelle instance de HashSet contenant les abonnements de
+	 * l'utilisateur spécifié ayant "liké" ce Post.
+	 */
+	@ParameterizedTest
+	@MethodSource("postAndUserProvider")
+	public void testgetLikersAmongSubscriptionsOf(Post self, User u) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires u != null;
+		assumeTrue(u != null);
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		HashSet<User> result = self.getLikersAmongSubscriptionsOf(u);
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures (\forall User v; \result.contains(v) <==> hasLikeFrom(v) && u.hasSubscriptionTo(v));
+		for (User v : result) {
+			assertTrue(self.hasLikeFrom(v) && u.hasSubscriptionTo(v));
+		}
+		for (User v : self.getLikers()) {
+			assertEquals(u.hasSubscriptionTo(v), result.contains(v));
+		}
+		// @ensures getLikeNumberAmongSubscriptionsOf(u) == \result.size();
+		assertEquals(result.size(), self.getLikeNumberAmongSubscriptionsOf(u));
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method isBefore
 	 *
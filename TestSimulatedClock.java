@@ -0,0 +1,258 @@
+package sociald1.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static sociald1.test.DataProvider.LG_STREAM;
+import static sociald1.test.DataProvider.randInt;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import sociald1.Post;
+import sociald1.SimulatedClock;
+import sociald1.TimeSource;
+import sociald1.Timestamps;
+import sociald1.User;
+
+/**
+ * Test class for SimulatedClock.
+ *
+ * Horloge simulée: une TimeSource dont l'heure ne change que sur demande.
+ * Chaque lecture (epochNanos()) peut en outre avancer l'heure d'un pas fixe.
+ *
+ * Un test qui installe une SimulatedClock par Timestamps.setSource(TimeSource)
+ * la fait partir du dernier horodatage attribué, avec un pas d'au plus une
+ * milliseconde, et rétablit TimeSource.SYSTEM: les dates attribuées ensuite aux
+ * autres tests ne sont avancées que de quelques millisecondes.
+ */
+public class TestSimulatedClock {
+
+	public static Stream<Instant> instantProvider() {
+		return Stream.generate(() -> Instant.ofEpochSecond(randInt(Integer.MAX_VALUE), randInt(1_000_000_000)))
+				.limit(LG_STREAM);
+	}
+
+	public static Stream<Arguments> instantAndDurationProvider() {
+		return instantProvider().map(start -> Arguments.of(start, Duration.ofNanos(randInt(1_000_000_000))));
+	}
+
+	/**
+	 * Pas de -1s à 1s, dont des pas négatifs.
+	 */
+	public static Stream<Arguments> instantAndStepProvider() {
+		return instantProvider().map(start -> Arguments.of(start,
+				Duration.ofNanos(randInt(2_000_000_000) - 1_000_000_000L)));
+	}
+
+	/**
+	 * Pas de 0 à 1ms.
+	 */
+	public static Stream<Duration> stepProvider() {
+		return Stream.generate(() -> Duration.ofNanos(randInt(1_000_001))).limit(LG_STREAM / 10);
+	}
+
+	public void assertInvariant(SimulatedClock self) {
+		// Put here the code to check the invariant:
+		// @invariant getStep() != null && !getStep().isNegative();
+		assertTrue(self.getStep() != null && !self.getStep().isNegative());
+	}
+
+	/**
+	 * Test method for constructor SimulatedClock
+	 *
+	 * Initialise une horloge simulée à la date spécifiée, dont l'heure n'avance
+	 * que par set(Instant) et advance(Duration).
+	 */
+	@ParameterizedTest
+	@MethodSource("instantProvider")
+	public void testSimulatedClock(Instant start) {
+
+		// Pré-conditions:
+		// @requires start != null;
+
+		// Exécution:
+		SimulatedClock result = new SimulatedClock(start);
+
+		// Post-conditions:
+		// @ensures getInstant().equals(start);
+		assertEquals(start, result.getInstant());
+		// @ensures getStep().isZero();
+		assertTrue(result.getStep().isZero());
+		// L'heure n'avance pas d'elle-même
+		assertEquals(nanos(start), result.epochNanos());
+		assertEquals(nanos(start), result.epochNanos());
+		assertEquals(start, result.getInstant());
+
+		// Invariant:
+		assertInvariant(result);
+	}
+
+	/**
+	 * Test method for method set
+	 *
+	 * Fixe l'heure courante de cette horloge.
+	 */
+	@ParameterizedTest
+	@MethodSource("instantAndDurationProvider")
+	public void testset(Instant start, Duration step) {
+		SimulatedClock self = new SimulatedClock(start);
+		self.setStep(step);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires date != null;
+		Instant date = Instant.ofEpochSecond(randInt(Integer.MAX_VALUE), randInt(1_000_000_000));
+
+		// Exécution:
+		self.set(date);
+
+		// Post-conditions:
+		// @ensures getInstant().equals(date);
+		assertEquals(date, self.getInstant());
+		// Le pas est conservé
+		assertEquals(step, self.getStep());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method advance
+	 *
+	 * Avance l'heure courante de cette horloge de la durée spécifiée.
+	 */
+	@ParameterizedTest
+	@MethodSource("instantAndDurationProvider")
+	public void testadvance(Instant start, Duration duration) {
+		SimulatedClock self = new SimulatedClock(start);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires duration != null && !duration.isNegative();
+
+		// Oldies:
+		// old in:@ensures getInstant().equals(\old(getInstant()).plus(duration));
+		Instant oldInstant = self.getInstant();
+
+		// Exécution:
+		self.advance(duration);
+
+		// Post-conditions:
+		// @ensures getInstant().equals(\old(getInstant()).plus(duration));
+		assertEquals(oldInstant.plus(duration), self.getInstant());
+		assertEquals(nanos(oldInstant.plus(duration)), self.epochNanos());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method setStep
+	 *
+	 * Fixe la durée dont chaque lecture (epochNanos()) avance cette horloge.
+	 */
+	@ParameterizedTest
+	@MethodSource("instantAndStepProvider")
+	public void testsetStep(Instant start, Duration step) {
+		SimulatedClock self = new SimulatedClock(start);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires step != null;
+
+		// Test du rejet d'un pas négatif:
+		if (step.isNegative()) {
+			try {
+				self.setStep(step);
+				fail("Le pas ne doit pas être négatif");
+			} catch (IllegalArgumentException e) {
+				// Comportement attendu
+			}
+			assertTrue(self.getStep().isZero());
+			assertInvariant(self);
+			return;
+		}
+
+		// Exécution:
+		self.setStep(step);
+
+		// Post-conditions:
+		// @ensures getStep().equals(step);
+		assertEquals(step, self.getStep());
+		// Chaque lecture renvoie l'heure courante puis l'avance d'un pas;
+		// getInstant() ne l'avance pas
+		int n = 1 + randInt(10);
+		for (int i = 0; i < n; i++) {
+			assertEquals(start.plus(step.multipliedBy(i)), self.getInstant());
+			assertEquals(nanos(start.plus(step.multipliedBy(i))), self.epochNanos());
+		}
+		assertEquals(start.plus(step.multipliedBy(n)), self.getInstant());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method epochNanos, installée par
+	 * Timestamps.setSource(TimeSource)
+	 *
+	 * Les Post créés successivement sont espacés du pas de l'horloge.
+	 */
+	@ParameterizedTest
+	@MethodSource("stepProvider")
+	public void testepochNanos(Duration step) {
+		assumeTrue(!step.isZero());
+		User author = new User("Auteur", "secret");
+		// Après le dernier horodatage attribué, celui de l'inscription de author
+		Instant start = author.getRegistrationDate().plusNanos(1);
+		SimulatedClock self = new SimulatedClock(start);
+		self.setStep(step);
+
+		// Invariant:
+		assertInvariant(self);
+
+		int n = 2 + randInt(10);
+		Post[] posts = new Post[n];
+		try {
+			Timestamps.setSource(self);
+
+			// Exécution:
+			for (int i = 0; i < n; i++) {
+				posts[i] = author.addPost("Message n°" + i);
+			}
+		} finally {
+			Timestamps.setSource(TimeSource.SYSTEM);
+		}
+
+		// Post-conditions:
+		// Les Post sont datés par les lectures successives de l'horloge
+		for (int i = 0; i < n; i++) {
+			assertEquals(start.plus(step.multipliedBy(i)), posts[i].getDate());
+		}
+		assertEquals(start.plus(step.multipliedBy(n)), self.getInstant());
+		assertEquals(TimeSource.SYSTEM, Timestamps.getSource());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Renvoie le nombre de nanosecondes écoulées entre l'époque et date.
+	 */
+	private static long nanos(Instant date) {
+		return date.getEpochSecond() * 1_000_000_000L + date.getNano();
+	}
+} // End of the test class for SimulatedClock
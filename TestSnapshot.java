@@ -0,0 +1,205 @@
+package sociald1.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static sociald1.test.DataProvider.randInt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import sociald1.Journal;
+import sociald1.NewsFeed;
+import sociald1.Post;
+import sociald1.PostIndex;
+import sociald1.Snapshot;
+import sociald1.User;
+import sociald1.UserRegistry;
+
+/**
+ * Test class for Snapshot.
+ *
+ * Instantané binaire compact du réseau social Microdon: read(Path) recrée le
+ * réseau enregistré par write(Path), avec les mêmes identifiants, les mêmes
+ * dates, les mêmes textes, les mêmes "likes" et abonnements et le même index
+ * plein texte. Un Journal ouvert après read(Path) ne rejoue que les
+ * enregistrements postérieurs à l'instantané.
+ *
+ * Un instantané ne peut être relu qu'avant la création du premier User: chaque
+ * scénario est exécuté par une JVM distincte (voir main(String[])), qui écrit
+ * sur sa sortie standard l'état du réseau (voir state()).
+ */
+public class TestSnapshot {
+
+	public static Stream<Long> seedProvider() {
+		return Stream.generate(() -> (long) randInt(Integer.MAX_VALUE)).limit(4);
+	}
+
+	public static Stream<Arguments> seedAndCheckpointProvider() {
+		return Stream.of(false, true, false, true)
+				.map(checkpoint -> Arguments.of((long) randInt(Integer.MAX_VALUE), checkpoint));
+	}
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Test method for methods write and read
+	 *
+	 * Enregistre le réseau entier dans un fichier et le recrée à l'identique.
+	 */
+	@ParameterizedTest
+	@MethodSource("seedProvider")
+	public void testread(long seed) throws Exception {
+		Path file = dir.resolve("reseau.snap");
+
+		// Exécution:
+		String written = run("write", file.toString(), Long.toString(seed));
+		String read = run("read", file.toString());
+
+		// Post-conditions:
+		// Textes, dates, "likes", abonnements, tailles des fils et recherches
+		// identiques
+		assertEquals(written, read);
+	}
+
+	/**
+	 * Test method for method read, sur un instantané corrompu
+	 *
+	 * Les sommes de contrôle sont vérifiées avant toute création de User.
+	 */
+	@ParameterizedTest
+	@MethodSource("seedProvider")
+	public void testreadCorrupted(long seed) throws Exception {
+		Path file = dir.resolve("reseau.snap");
+		run("write", file.toString(), Long.toString(seed));
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer data = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+			// Premier octet de la première partition, après l'en-tête
+			data.put(32, (byte) ~data.get(32));
+		}
+
+		// Exécution:
+		String read = run("read", file.toString());
+
+		// Post-conditions:
+		assertEquals("IOException, 0 User\n", read);
+	}
+
+	/**
+	 * Test method for method write, pendant la journalisation, et pour
+	 * Journal.checkpoint(Path)
+	 *
+	 * Le réseau est recréé par l'instantané puis par les seuls enregistrements
+	 * du journal qui le suivent; checkpoint(Path) supprime les segments
+	 * précédents.
+	 */
+	@ParameterizedTest
+	@MethodSource("seedAndCheckpointProvider")
+	public void testwriteWithJournal(long seed, boolean checkpoint) throws Exception {
+		Path journal = dir.resolve("journal");
+		Path file = dir.resolve("reseau.snap");
+
+		// Exécution:
+		String written = run("journal", journal.toString(), file.toString(), Long.toString(seed),
+				Boolean.toString(checkpoint));
+		String restored = run("restore", journal.toString(), file.toString());
+
+		// Post-conditions:
+		assertEquals(written, restored);
+		assertEquals(!checkpoint, Files.exists(journal.resolve("journal-00000000.seg")));
+		// Les enregistrements de la relecture ne sont pas journalisés à nouveau
+		assertEquals(restored, run("restore", journal.toString(), file.toString()));
+	}
+
+	private static String run(String... args) throws IOException, InterruptedException {
+		return TestJournal.run(TestSnapshot.class, args);
+	}
+
+	/**
+	 * Phases exécutées par une JVM distincte:
+	 * <ul>
+	 * <li>write file seed: crée un réseau aléatoire, l'enregistre dans file et
+	 * écrit son état</li>
+	 * <li>read file: relit file et écrit l'état obtenu, ou "IOException" et le
+	 * nombre de User si l'instantané est invalide</li>
+	 * <li>journal dir file seed checkpoint: ouvre le journal de dir, crée un
+	 * réseau aléatoire, l'enregistre dans file (par Journal.checkpoint(Path) si
+	 * checkpoint est true), le modifie encore et écrit son état</li>
+	 * <li>restore dir file: relit file, ouvre le journal de dir et écrit l'état
+	 * obtenu</li>
+	 * </ul>
+	 */
+	public static void main(String[] args) throws IOException {
+		switch (args[0]) {
+		case "write":
+			TestJournal.build(new Random(Long.parseLong(args[2])));
+			Snapshot.write(Path.of(args[1]));
+			break;
+		case "read":
+			try {
+				Snapshot.read(Path.of(args[1]));
+			} catch (IOException e) {
+				System.out.print("IOException, " + UserRegistry.size() + " User\n");
+				return;
+			}
+			break;
+		case "journal":
+			try (Journal journal = Journal.open(Path.of(args[1]))) {
+				Random random = new Random(Long.parseLong(args[3]));
+				TestJournal.build(random);
+				if (Boolean.parseBoolean(args[4])) {
+					journal.checkpoint(Path.of(args[2]));
+				} else {
+					Snapshot.write(Path.of(args[2]));
+				}
+				// Modifications postérieures à l'instantané, y compris de User relus
+				TestJournal.build(random);
+				User first = UserRegistry.get(0);
+				Post p = first.addPost("Après l'instantané café");
+				p.addLikeFrom(UserRegistry.get(UserRegistry.size() - 1));
+				UserRegistry.get(UserRegistry.size() - 1).addSubscription(first);
+			}
+			break;
+		default:
+			Snapshot.read(Path.of(args[2]));
+			Journal.open(Path.of(args[1])).close();
+			break;
+		}
+		System.out.print(state());
+	}
+
+	/**
+	 * Renvoie une description exacte de l'état du réseau (voir
+	 * TestJournal.digest()), complétée par la taille du fil d'actualité de chaque
+	 * User et par les résultats de quelques recherches.
+	 */
+	private static String state() {
+		StringBuilder out = new StringBuilder(TestJournal.digest());
+		for (int id = 0; id < UserRegistry.size(); id++) {
+			out.append("Fil ").append(id).append(": ").append(new NewsFeed(UserRegistry.get(id)).size()).append('\n');
+		}
+		String[] queries = { "zoë", "юлия", "東京", "café", "mot", "x" };
+		for (String query : queries) {
+			out.append("Recherche ").append(TestJournal.escape(query)).append(':');
+			for (Post p : PostIndex.search(query, 20)) {
+				out.append(' ').append(p.getDate());
+			}
+			out.append('\n');
+		}
+		out.append("Expression:");
+		for (Post p : PostIndex.searchPhrase("café mot", 20)) {
+			out.append(' ').append(p.getDate());
+		}
+		return out.append('\n').toString();
+	}
+} // End of the test class for Snapshot
@@ -25,8 +25,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import sociald1.NewsFeed;
 import sociald1.Post;
+import sociald1.PostCursor;
 import sociald1.User;
+import sociald1.UserRegistry;
 
 
 /**
@@ -83,6 +86,10 @@ public class TestUser {
 		return userProvider().map(u -> Arguments.of(u, randInt(u.getPostNb())));
 	}
 
+	public static Stream<Integer> capacityProvider() {
+		return Stream.generate(() -> 1 + randInt(10)).limit(LG_STREAM);
+	}
+
 	private String name;
 	private String password;
 	private Instant registrationDate;
@@ -127,6 +134,9 @@ public class TestUser {
 
 	public void assertInvariant(User self) {
 		// Put here the code to check the invariant:
+		// @invariant getId() >= 0 && UserRegistry.get(getId()) == this;
+		assertTrue(self.getId() >= 0);
+		assertTrue(UserRegistry.get(self.getId()) == self);
 		// @invariant getName() != null && !getName().isBlank();
 		assertNotNull(self.getName());
 		assertFalse(self.getName().isBlank());
@@ -140,6 +150,12 @@ public class TestUser {
 		assertFalse(self.getSubscriptions().contains(null));
 		// @invariant getSubscriptionNb() == getSubscriptions().size();
 		assertEquals(self.getSubscriptionNb(), self.getSubscriptions().size());
+		// @invariant (\forall User u; getSubscriptions().contains(u); u.getFollowers().contains(this));
+		for (User u : self.getSubscriptions()) {
+			assertTrue(u.getFollowers().contains(self));
+		}
+		// @invariant getFollowerNb() == getFollowers().size();
+		assertEquals(self.getFollowerNb(), self.getFollowers().size());
 		// @invariant getPosts() != null && !getPosts().contains(null);
 		assertNotNull(self.getPosts());
 		assertFalse(self.getPosts().contains(null));
@@ -188,6 +204,8 @@ public class TestUser {
 		while (!oldDate.isBefore(Instant.now())) {
 			list.add(null);
 		}
+		// old in:@ensures getId() == \old(UserRegistry.size());
+		int oldRegistrySize = UserRegistry.size();
 		// Exécution:
 		User result = new User(userName, password);
 
@@ -198,6 +216,8 @@ public class TestUser {
 		}
 		list = null;
 		// Post-conditions:
+		// @ensures getId() == \old(UserRegistry.size());
+		assertEquals(oldRegistrySize, result.getId());
 		// @ensures getName().equals(userName);
 		assertEquals(userName, result.getName());
 		// @ensures getPassword().equals(password);
@@ -377,6 +397,58 @@ public class TestUser {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method getSubscriptionsView
+	 *
+	 * Renvoie une vue non modifiable de l'ensemble des utilisateurs auxquels cet
+	 * utilisateur s'est abonné.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testgetSubscriptionsView(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		Set<User> result = self.getSubscriptionsView();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.equals(getSubscriptions());
+		assertEquals(self.getSubscriptions(), result);
+		assertEquals(self.getSubscriptionNb(), result.size());
+		// Parcours par identifiant croissant:
+		int lastId = -1;
+		for (User u : result) {
+			assertTrue(self.hasSubscriptionTo(u));
+			assertTrue(u.getId() > lastId);
+			lastId = u.getId();
+		}
+		// Test de la non modifiabilité:
+		try {
+			result.add(self);
+			fail("La vue doit être non modifiable");
+		} catch (UnsupportedOperationException e) {
+			// Comportement attendu
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method addSubscription
 	 *
@@ -424,6 +496,8 @@ public class TestUser {
 		assertEquals(self.getSubscriptions().equals(oldSubs), !result);
 		// @ensures getSubscriptions().containsAll(oldSubs);
 		assertTrue(self.getSubscriptions().containsAll(oldSubs));
+		// @ensures u.hasFollower(this);
+		assertTrue(u.hasFollower(self));
 
 		// Invariant:
 		assertInvariant(self);
@@ -469,6 +543,10 @@ public class TestUser {
 		assertEquals(self.getSubscriptionNb() == oldSubNb, !result);
 		// @ensures !\result <==> (getSubscriptions().equals(\old(getSubscriptions()));
 		assertEquals(self.getSubscriptions().equals(oldSubs), !result);
+		// @ensures u != null ==> !u.hasFollower(this);
+		if (u != null) {
+			assertFalse(u.hasFollower(self));
+		}
 
 		// Invariant:
 		assertInvariant(self);
@@ -544,6 +622,81 @@ public class TestUser {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method getFollowers
+	 *
+	 * Renvoie une vue non modifiable de l'ensemble des utilisateurs abonnés à cet
+	 * utilisateur.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testgetFollowers(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		Set<User> result = self.getFollowers();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures (\forall User u; \result.contains(u); u.hasSubscriptionTo(this));
+		for (User u : result) {
+			assertTrue(u.hasSubscriptionTo(self));
+		}
+		// @ensures \result.size() == getFollowerNb();
+		assertEquals(self.getFollowerNb(), result.size());
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method hasFollower
+	 *
+	 * Renvoie true si l'utilisateur spécifié est abonné à cet utilisateur.
+	 */
+	@ParameterizedTest
+	@MethodSource("userAndUserProvider")
+	public void testhasFollower(User self, User u) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		boolean result = self.hasFollower(u);
+
+		// Post-conditions:
+		// @ensures \result <==> u != null && u.hasSubscriptionTo(this);
+		assertEquals(u != null && u.hasSubscriptionTo(self), result);
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method getPosts
 	 *
@@ -585,6 +738,50 @@ public class TestUser {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method getPostsView
+	 *
+	 * Renvoie une vue non modifiable de la liste des Post de cet utilisateur, du
+	 * plus récent au plus ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testgetPostsView(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		List<Post> result = self.getPostsView();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.equals(getPosts());
+		assertEquals(self.getPosts(), result);
+		// Test de la non modifiabilité:
+		try {
+			result.add(null);
+			fail("La vue doit être non modifiable");
+		} catch (UnsupportedOperationException e) {
+			// Comportement attendu
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method addPost
 	 *
@@ -659,6 +856,70 @@ public class TestUser {
  		// Invariant:
  		assertInvariant(self);
  	}
+
+	/**
+	 * Test method for method addPost(String, Instant)
+	 *
+	 * Crée et renvoie une nouvelle instance de Post de texte et de date spécifiés
+	 * et l'ajoute à la liste des posts de cet utilisateur, comme addPost(String).
+	 */
+	@ParameterizedTest
+	@MethodSource("userAndStringProvider")
+	public void testaddPostInstant(User self, String msg) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Date postérieure au dernier Post mais non future: les Post créés ensuite
+		// par addPost(String) restent antérieurs à Instant.now()
+		Instant last = self.getPostNb() == 0 ? self.getRegistrationDate() : self.getPost(0).getDate();
+		Instant date = last.plusNanos(1 + randInt(1000));
+
+		// Pré-conditions:
+		// @requires msg != null && date != null;
+		assumeTrue(msg != null);
+		// @requires getPostNb() == 0 || date.isAfter(getPost(0).getDate());
+		// @requires date n'est pas postérieure à l'heure de Timestamps.getSource();
+		assumeTrue(date.isBefore(Instant.now()));
+
+		// Oldies:
+		// old in:@ensures getPostNb() == \old(getPostNb()) + 1;
+		int oldPostNb = self.getPostNb();
+
+		// Exécution:
+		Post result = self.addPost(msg, date);
+
+		// Post-conditions:
+		// @ensures getPost(0).equals(\result);
+		assertEquals(self.getPost(0), result);
+		// @ensures \result.getText().equals(msg);
+		assertEquals(msg, result.getText());
+		// @ensures \result.getDate().equals(date);
+		assertEquals(date, result.getDate());
+		// @ensures getPostNb() == \old(getPostNb()) + 1;
+		assertEquals(oldPostNb + 1, self.getPostNb());
+		// Test du rejet d'une date non postérieure au dernier Post:
+		try {
+			self.addPost(msg, date);
+			fail("La date doit être postérieure à celle du dernier Post");
+		} catch (IllegalArgumentException e) {
+			// Comportement attendu
+		}
+		assertEquals(oldPostNb + 1, self.getPostNb());
+		// Test du rejet d'une date future:
+		try {
+			self.addPost(msg, Instant.now().plusSeconds(1 + randInt(1000)));
+			fail("La date ne doit pas être future");
+		} catch (IllegalArgumentException e) {
+			// Comportement attendu
+		}
+		assertEquals(oldPostNb + 1, self.getPostNb());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method getPostNb
 	 *
@@ -1048,4 +1309,285 @@ public class TestUser {
 		// Invariant:
 		assertInvariant(self);
 	}
+
+	/**
+	 * Test method for method cursor
+	 *
+	 * Renvoie un nouveau curseur sur les Post de ce User, placé avant le Post le
+	 * plus récent. Ce curseur porte sa propre position: il est indépendant des
+	 * méthodes d'itération de ce User et des autres curseurs.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testcursor(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		PostCursor result = self.cursor();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \result.nextIndex() == 0;
+		assertEquals(0, result.nextIndex());
+		// @ensures \result.lastIndex() == -1;
+		assertEquals(-1, result.lastIndex());
+		// @ensures \result.hasNext() <==> getPostNb() > 0;
+		assertEquals(self.getPostNb() > 0, result.hasNext());
+		// Le curseur parcourt les Post sans déplacer l'itération de ce User
+		for (int i = 0; result.hasNext(); i++) {
+			assertEquals(self.getPost(i), result.next());
+			assertEquals(self, result.lastUser());
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method postsBetween
+	 *
+	 * Renvoie une vue non modifiable de la liste des Post de ce User dont la date
+	 * est comprise entre from (inclus) et to (exclu), triée du plus récent au plus
+	 * ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testpostsBetween(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires from != null && to != null;
+		Instant from = postSupplier().getDate();
+		Instant to = postSupplier().getDate();
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		List<Post> result = self.postsBetween(from, to);
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures (\forall Post p; \result.contains(p); getPosts().contains(p) &&
+		// !p.getDate().isBefore(from) && p.getDate().isBefore(to));
+		for (Post p : result) {
+			assertTrue(self.getPosts().contains(p));
+			assertFalse(p.getDate().isBefore(from));
+			assertTrue(p.getDate().isBefore(to));
+		}
+		// @ensures (\forall Post p; getPosts().contains(p) &&
+		// !p.getDate().isBefore(from) && p.getDate().isBefore(to); \result.contains(p));
+		for (Post p : self.getPosts()) {
+			if (!p.getDate().isBefore(from) && p.getDate().isBefore(to)) {
+				assertTrue(result.contains(p));
+			}
+		}
+		// @ensures (\forall int i, j; i >= 0 && i < j && j < \result.size();
+		// \result.get(i).isAfter(\result.get(j)));
+		for (int i = 1; i < result.size(); i++) {
+			assertTrue(result.get(i - 1).isAfter(result.get(i)));
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method postsSince
+	 *
+	 * Renvoie une vue non modifiable de la liste des Post de ce User dont la date
+	 * n'est pas antérieure à la date spécifiée, triée du plus récent au plus
+	 * ancien.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testpostsSince(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires since != null;
+		Instant since = postSupplier().getDate();
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Oldies:
+
+		// Exécution:
+		List<Post> result = self.postsSince(since);
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures (\forall Post p; \result.contains(p); getPosts().contains(p) &&
+		// !p.getDate().isBefore(since));
+		for (Post p : result) {
+			assertTrue(self.getPosts().contains(p));
+			assertFalse(p.getDate().isBefore(since));
+		}
+		// @ensures (\forall Post p; getPosts().contains(p) &&
+		// !p.getDate().isBefore(since); \result.contains(p));
+		for (Post p : self.getPosts()) {
+			if (!p.getDate().isBefore(since)) {
+				assertTrue(result.contains(p));
+			}
+		}
+		// @ensures (\forall int i, j; i >= 0 && i < j && j < \result.size();
+		// \result.get(i).isAfter(\result.get(j)));
+		for (int i = 1; i < result.size(); i++) {
+			assertTrue(result.get(i - 1).isAfter(result.get(i)));
+		}
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+	/**
+	 * Test method for method enableTimeline
+	 *
+	 * Active le mode "push" pour le fil d'actualité de ce User: les Post les plus
+	 * récents de ce User et de ses abonnements sont fusionnés une fois pour toutes
+	 * dans une mémoire tampon d'au plus capacity Post.
+	 */
+	@ParameterizedTest
+	@MethodSource("capacityProvider")
+	public void testenableTimeline(int capacity) {
+		// Réseau propre au test: les User du DataProvider restent en mode "pull"
+		User self = new User("Timeline", "secret");
+		User[] authors = { new User("Auteur0", "secret"), new User("Auteur1", "secret"),
+				new User("Auteur2", "secret") };
+		self.addSubscription(authors[0]);
+		self.addSubscription(authors[1]);
+		// Post antérieurs à l'activation: fusionnés par enableTimeline
+		postRandomly(self, authors, 2 * capacity);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires capacity > 0;
+		assumeTrue(capacity > 0);
+
+		// Exécution:
+		self.enableTimeline(capacity);
+
+		// Post-conditions:
+		// @ensures hasTimeline();
+		assertTrue(self.hasTimeline());
+		assertEquals(1, authors[0].getTimelineFollowerNb());
+		assertEquals(mergedFeed(self), feed(self));
+		// Post postérieurs: insérés à l'écriture, les plus anciens étant écartés
+		// au-delà de la capacité sans disparaître du fil d'actualité
+		postRandomly(self, authors, 3 * capacity);
+		assertEquals(mergedFeed(self), feed(self));
+		// Abonnement ultérieur: fusionné dans le fil matérialisé
+		self.addSubscription(authors[2]);
+		assertEquals(1, authors[2].getTimelineFollowerNb());
+		assertEquals(mergedFeed(self), feed(self));
+		// Désabonnement: les Post de l'auteur sont retirés du fil matérialisé
+		self.removeSubscription(authors[1]);
+		assertEquals(0, authors[1].getTimelineFollowerNb());
+		postRandomly(self, authors, capacity);
+		assertEquals(mergedFeed(self), feed(self));
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method disableTimeline
+	 *
+	 * Désactive le mode "push" pour le fil d'actualité de ce User. Le NewsFeed de
+	 * ce User est alors entièrement fusionné au moment de la lecture.
+	 */
+	@ParameterizedTest
+	@MethodSource("capacityProvider")
+	public void testdisableTimeline(int capacity) {
+		User self = new User("Timeline", "secret");
+		User[] authors = { new User("Auteur0", "secret"), new User("Auteur1", "secret") };
+		self.addSubscription(authors[0]);
+		self.addSubscription(authors[1]);
+		self.enableTimeline(capacity);
+		postRandomly(self, authors, 2 * capacity);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		self.disableTimeline();
+
+		// Post-conditions:
+		// @ensures !hasTimeline();
+		assertFalse(self.hasTimeline());
+		for (User author : authors) {
+			assertEquals(0, author.getTimelineFollowerNb());
+		}
+		postRandomly(self, authors, capacity);
+		assertEquals(mergedFeed(self), feed(self));
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Fait poster n fois self ou l'un des auteurs spécifiés, tirés au hasard.
+	 */
+	private static void postRandomly(User self, User[] authors, int n) {
+		for (int i = 0; i < n; i++) {
+			int k = randInt(authors.length + 1);
+			(k == authors.length ? self : authors[k]).addPost("Message n°" + i);
+		}
+	}
+
+	/**
+	 * Renvoie les Post du fil d'actualité de u, parcouru par un PostCursor.
+	 */
+	private static List<Post> feed(User u) {
+		List<Post> result = new ArrayList<>();
+		PostCursor cursor = new NewsFeed(u).cursor();
+		while (cursor.hasNext()) {
+			result.add(cursor.next());
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie les Post de u et de ses abonnements, du plus récent au plus ancien.
+	 */
+	private static List<Post> mergedFeed(User u) {
+		List<Post> result = new ArrayList<>(u.getPosts());
+		for (User s : u.getSubscriptions()) {
+			result.addAll(s.getPosts());
+		}
+		result.sort((p, q) -> q.getDate().compareTo(p.getDate()));
+		return result;
+	}
 } // End of the test class for User
@@ -0,0 +1,270 @@
+package sociald1;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Mémoire hors tas des textes des Post.
+ *
+ * Les textes sont ajoutés les uns à la suite des autres dans des blocs de
+ * CHUNK_SIZE octets alloués hors du tas Java (ByteBuffer.allocateDirect): un
+ * Post ne conserve que la référence de son texte dans l'arène et sa longueur,
+ * et ses textes, rarement relus après leur publication, ne sont ni parcourus
+ * ni déplacés par le ramasse-miettes. Comme les String compactes, un texte
+ * dont tous les caractères sont inférieurs à 256 est codé sur un octet par
+ * caractère (ISO-8859-1), les autres sur deux (UTF-16 brut): le texte relu
+ * est toujours identique au texte ajouté et son ième caractère se lit en O(1)
+ * (voir charAt(long, int)).
+ *
+ * Une référence code l'indice du bloc, la position du texte dans ce bloc et
+ * son codage. Un texte plus grand qu'un bloc reçoit un bloc à sa taille.
+ *
+ * L'arène ne fait que croître: la mémoire d'un texte n'est jamais libérée. Sa
+ * taille est bornée par l'option -XX:MaxDirectMemorySize de la JVM.
+ *
+ * Les ajouts sont sérialisés; les lectures ne prennent aucun verrou et peuvent
+ * être effectuées par plusieurs threads simultanément, le texte d'un Post étant
+ * écrit avant que ce Post ne soit publié.
+ *
+ * @invariant size() >= 0;
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+final class TextArena {
+	/**
+	 * Taille d'un bloc, en octets.
+	 */
+	static final int CHUNK_SIZE = 1 << 22;
+
+	private static final int OFFSET_BITS = 31;
+	private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+	private static final long UTF16 = 1L << 62;
+
+	private static volatile ByteBuffer[] chunks = new ByteBuffer[16];
+	private static int chunkNb;
+	private static int used = CHUNK_SIZE;
+	private static long size;
+
+	private TextArena() {
+	}
+
+	/**
+	 * Renvoie le nombre d'octets occupés par les textes de l'arène.
+	 *
+	 * @pure
+	 */
+	static synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Ajoute le texte spécifié à l'arène et renvoie sa référence.
+	 *
+	 * @requires text != null;
+	 * @ensures get(\result, text.length()).equals(text);
+	 */
+	static long append(String text) {
+		if (text.isEmpty()) {
+			return 0;
+		}
+		byte[] bytes = encode(text);
+		long ref = reserve(bytes);
+		return bytes.length == text.length() ? ref : ref | UTF16;
+	}
+
+	/**
+	 * Code le texte spécifié comme dans l'arène: sur un octet par caractère
+	 * (ISO-8859-1) si tous ses caractères sont inférieurs à 256, sur deux sinon
+	 * (UTF-16 brut). Le codage se déduit de la longueur du résultat. Contrairement
+	 * à UTF-8, ce codage conserve les demi-caractères isolés; il est aussi celui
+	 * des chaînes du Journal et de Snapshot.
+	 *
+	 * @requires text != null;
+	 * @ensures \result.length == text.length() || \result.length == 2 * text.length();
+	 * @ensures decode(\result, \result.length == text.length()).equals(text);
+	 *
+	 * @pure
+	 */
+	static byte[] encode(String text) {
+		int n = text.length();
+		boolean latin1 = true;
+		for (int i = 0; i < n && latin1; i++) {
+			latin1 = text.charAt(i) < 256;
+		}
+		if (latin1) {
+			return text.getBytes(StandardCharsets.ISO_8859_1);
+		}
+		// Copie brute des caractères: un codage UTF-16 remplacerait les
+		// demi-caractères isolés
+		byte[] bytes = new byte[2 * n];
+		for (int i = 0; i < n; i++) {
+			char c = text.charAt(i);
+			bytes[2 * i] = (byte) (c >>> 8);
+			bytes[2 * i + 1] = (byte) c;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Écrit dans le tampon spécifié le texte spécifié, codé par encode(String) en
+	 * bytes, précédé de sa longueur en octets (int), négative s'il est codé sur
+	 * deux octets par caractère.
+	 *
+	 * @requires b != null && text != null;
+	 * @requires Arrays.equals(bytes, encode(text));
+	 * @requires b.remaining() >= 4 + bytes.length;
+	 */
+	static void write(ByteBuffer b, String text, byte[] bytes) {
+		b.putInt(bytes.length == text.length() ? bytes.length : -bytes.length).put(bytes);
+	}
+
+	/**
+	 * Lit dans le tampon spécifié un texte écrit par write(ByteBuffer, String,
+	 * byte[]).
+	 *
+	 * @requires b != null;
+	 */
+	static String read(ByteBuffer b) {
+		int length = b.getInt();
+		byte[] bytes = new byte[Math.abs(length)];
+		b.get(bytes);
+		return decode(bytes, length >= 0);
+	}
+
+	/**
+	 * Décode un texte codé par encode(String), sur un octet par caractère si
+	 * latin1 est true, sur deux sinon.
+	 *
+	 * @requires bytes != null;
+	 * @requires latin1 || bytes.length % 2 == 0;
+	 *
+	 * @pure
+	 */
+	static String decode(byte[] bytes, boolean latin1) {
+		if (latin1) {
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+		char[] chars = new char[bytes.length / 2];
+		ByteBuffer.wrap(bytes).asCharBuffer().get(chars);
+		return new String(chars);
+	}
+
+	private static synchronized long reserve(byte[] bytes) {
+		if (bytes.length > CHUNK_SIZE - used) {
+			ByteBuffer[] current = chunks;
+			if (chunkNb == current.length) {
+				current = Arrays.copyOf(current, chunkNb * 2);
+			}
+			current[chunkNb++] = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, bytes.length));
+			// Bloc publié avant toute référence vers son contenu
+			chunks = current;
+			used = 0;
+		}
+		int chunk = chunkNb - 1;
+		int offset = used;
+		chunks[chunk].put(offset, bytes);
+		used += bytes.length;
+		size += bytes.length;
+		return ((long) chunk << OFFSET_BITS) | offset;
+	}
+
+	/**
+	 * Renvoie le texte de référence et de longueur (en caractères) spécifiées.
+	 *
+	 * @requires ref a été renvoyée par append(String) pour un texte de longueur
+	 *           length;
+	 * @ensures \result.length() == length;
+	 *
+	 * @pure
+	 */
+	static String get(long ref, int length) {
+		return get(ref, 0, length);
+	}
+
+	/**
+	 * Renvoie les length caractères du texte de référence spécifiée à partir du
+	 * caractère d'indice start.
+	 */
+	private static String get(long ref, int start, int length) {
+		if (length == 0) {
+			return "";
+		}
+		if ((ref & UTF16) != 0) {
+			char[] chars = new char[length];
+			chunk(ref).slice(offset(ref) + 2 * start, 2 * length).asCharBuffer().get(chars);
+			return new String(chars);
+		}
+		byte[] bytes = new byte[length];
+		chunk(ref).get(offset(ref) + start, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Renvoie le ième caractère du texte de référence spécifiée.
+	 *
+	 * @requires i >= 0 && i < longueur du texte;
+	 *
+	 * @pure
+	 */
+	static char charAt(long ref, int i) {
+		if ((ref & UTF16) != 0) {
+			return chunk(ref).getChar(offset(ref) + 2 * i);
+		}
+		return (char) (chunk(ref).get(offset(ref) + i) & 0xFF);
+	}
+
+	private static ByteBuffer chunk(long ref) {
+		return chunks[(int) ((ref & ~UTF16) >>> OFFSET_BITS)];
+	}
+
+	private static int offset(long ref) {
+		return (int) (ref & OFFSET_MASK);
+	}
+
+	/**
+	 * Vue en lecture seule d'une partie d'un texte de l'arène, lue sans copie.
+	 */
+	static final class View implements CharSequence {
+		private final long ref;
+		private final int start;
+		private final int length;
+
+		/**
+		 * Initialise une vue des caractères de start (inclus) à start + length
+		 * (exclu) du texte de référence spécifiée.
+		 */
+		View(long ref, int start, int length) {
+			this.ref = ref;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			return TextArena.charAt(ref, start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || from > to || to > length) {
+				throw new IndexOutOfBoundsException("[" + from + ", " + to + "[ hors de [0, " + length + "[");
+			}
+			return new View(ref, start + from, to - from);
+		}
+
+		@Override
+		public String toString() {
+			return get(ref, start, length);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package sociald1;
+
+import java.time.Instant;
+
+/**
+ * Source de l'heure courante des horodatages attribués aux Post et aux User
+ * (voir Timestamps.setSource(TimeSource)).
+ *
+ * Une TimeSource renvoie l'heure courante en nanosecondes écoulées depuis le
+ * 1er janvier 1970 UTC, sous forme d'un entier long, sans créer d'objet. Elle
+ * n'a pas à être strictement croissante ni même croissante: Timestamps en
+ * déduit des horodatages strictement croissants.
+ *
+ * @see CoarseClock
+ * @see SimulatedClock
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+@FunctionalInterface
+public interface TimeSource {
+	/**
+	 * Source lisant l'horloge du système à chaque appel (Instant.now()).
+	 */
+	TimeSource SYSTEM = () -> Timestamps.of(Instant.now());
+
+	/**
+	 * Renvoie l'heure courante de cette source.
+	 *
+	 * @return le nombre de nanosecondes écoulées depuis le 1er janvier 1970 UTC
+	 */
+	long epochNanos();
+}
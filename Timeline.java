@@ -0,0 +1,279 @@
+package sociald1;
+
+/**
+ * Fil d'actualité matérialisé d'un User (mode "push"): une mémoire tampon
+ * bornée contenant les Post les plus récents du NewsFeed de ce User, déjà
+ * fusionnés et ordonnés du plus récent au plus ancien, avec leur auteur.
+ *
+ * Le Timeline contient exactement les Post du fil d'actualité dont la date est
+ * strictement postérieure à getCutoff(); lorsqu'aucun Post n'a été écarté,
+ * getCutoff() est null et le Timeline contient le fil complet. Le Timeline est
+ * ainsi toujours un préfixe du fil d'actualité fusionné, ce qui permet à
+ * NewsFeed de poursuivre l'itération au-delà par une fusion classique.
+ *
+ * Les Post sont rangés dans un tableau circulaire: l'ajout d'un nouveau Post en
+ * tête coûte O(1), le Post le plus ancien étant écarté si le Timeline est plein.
+ * Les modifications sont sérialisées, plusieurs auteurs pouvant poster depuis
+ * des threads différents.
+ *
+ * Un lecteur peut marquer l'état courant du Timeline (sous le verrou de
+ * celui-ci: size(), getPushNb() et getLayoutNb()) puis continuer à lire les
+ * Post de cet état sans les copier, via getPost(int, long, long) et
+ * getAuthor(int, long, long): un ajout en tête ne fait que décaler les indices
+ * d'autant. Seuls l'éviction d'un Post, l'insertion d'un Post ailleurs qu'en
+ * tête et les fusions ou retraits d'auteur rendent l'état marqué illisible.
+ *
+ * @invariant size() >= 0 && size() <= capacity();
+ * @invariant (\forall int i; i >= 0 && i < size(); getPost(i) != null &&
+ *            getAuthor(i) != null);
+ * @invariant (\forall int i; i >= 0 && i < size() - 1;
+ *            !getPost(i).isBefore(getPost(i + 1)));
+ * @invariant getCutoff() != null ==> (\forall int i; i >= 0 && i < size();
+ *            getPost(i).getDate().isAfter(getCutoff()));
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+class Timeline {
+	private Post[] posts;
+	private User[] authors;
+	private int head;
+	private int size;
+	// Horodatage de coupure (voir Timestamps), Long.MIN_VALUE si aucune coupure
+	private long cutoff;
+	// Nombre d'appels à push(), et à merge() ou remove()
+	private long pushNb;
+	private long layoutNb;
+
+	/**
+	 * Initialise un Timeline vide de la capacité spécifiée.
+	 *
+	 * @param capacity nombre maximal de Post conservés
+	 *
+	 * @requires capacity > 0;
+	 * @ensures size() == 0;
+	 * @ensures getCutoff() == Long.MIN_VALUE;
+	 */
+	Timeline(int capacity) {
+		this.posts = new Post[capacity];
+		this.authors = new User[capacity];
+		this.head = 0;
+		this.size = 0;
+		this.cutoff = Long.MIN_VALUE;
+	}
+
+	int capacity() {
+		return posts.length;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Renvoie l'horodatage (voir Timestamps) en deçà duquel des Post ont été
+	 * écartés, ou Long.MIN_VALUE si le Timeline contient le fil d'actualité
+	 * complet.
+	 *
+	 * @pure
+	 */
+	long getCutoff() {
+		return cutoff;
+	}
+
+	long getPushNb() {
+		return pushNb;
+	}
+
+	long getLayoutNb() {
+		return layoutNb;
+	}
+
+	/**
+	 * Renvoie le ième Post le plus récent de l'état marqué par les compteurs
+	 * spécifiés, ou null si ce Post a été écarté ou si la disposition du Timeline
+	 * a changé depuis.
+	 *
+	 * @requires i >= 0;
+	 * @pure
+	 */
+	synchronized Post getPost(int i, long pushMark, long layoutMark) {
+		int k = locate(i, pushMark, layoutMark);
+		return k < 0 ? null : getPost(k);
+	}
+
+	/**
+	 * Renvoie l'auteur du ième Post le plus récent de l'état marqué par les
+	 * compteurs spécifiés, ou null si ce Post a été écarté ou si la disposition du
+	 * Timeline a changé depuis.
+	 *
+	 * @requires i >= 0;
+	 * @pure
+	 */
+	synchronized User getAuthor(int i, long pushMark, long layoutMark) {
+		int k = locate(i, pushMark, layoutMark);
+		return k < 0 ? null : getAuthor(k);
+	}
+
+	/**
+	 * Renvoie le ième Post le plus récent de ce Timeline.
+	 *
+	 * @requires i >= 0 && i < size();
+	 * @pure
+	 */
+	Post getPost(int i) {
+		return posts[(head + i) % posts.length];
+	}
+
+	/**
+	 * Renvoie l'auteur du ième Post le plus récent de ce Timeline.
+	 *
+	 * @requires i >= 0 && i < size();
+	 * @pure
+	 */
+	User getAuthor(int i) {
+		return authors[(head + i) % posts.length];
+	}
+
+	/**
+	 * Ajoute un nouveau Post à ce Timeline, en écartant le plus ancien si la
+	 * capacité est atteinte. Un nouveau Post est normalement plus récent que tous
+	 * ceux du Timeline et placé en tête. Lorsque plusieurs auteurs postent depuis
+	 * des threads différents, un Post peut arriver après d'autres plus récents que
+	 * lui: il est alors placé à son rang, ou écarté s'il n'est pas postérieur à
+	 * getCutoff().
+	 *
+	 * @requires p != null && author != null;
+	 */
+	synchronized void push(Post p, User author) {
+		int capacity = posts.length;
+		if (p.getTimestamp() <= cutoff) {
+			return;
+		}
+		int k = 0;
+		while (k < size && p.isBefore(getPost(k))) {
+			k++;
+		}
+		if (k == size && size == capacity) {
+			// Plus ancien que tous les Post d'un Timeline plein: écarté d'emblée
+			cutoff = p.getTimestamp();
+			return;
+		}
+		if (size == capacity) {
+			drop(size - 1);
+			size--;
+		}
+		head = (head + capacity - 1) % capacity;
+		for (int i = 0; i < k; i++) {
+			int dest = (head + i) % capacity;
+			int src = (head + i + 1) % capacity;
+			posts[dest] = posts[src];
+			authors[dest] = authors[src];
+		}
+		posts[(head + k) % capacity] = p;
+		authors[(head + k) % capacity] = author;
+		size++;
+		// Seul un ajout en tête préserve les indices marqués, à un décalage près
+		if (k == 0) {
+			pushNb++;
+		} else {
+			layoutNb++;
+		}
+	}
+
+	/**
+	 * Fusionne dans ce Timeline les Post de l'auteur spécifié postérieurs à
+	 * getCutoff(), puis écarte les plus anciens au-delà de la capacité.
+	 *
+	 * @requires author != null;
+	 */
+	synchronized void merge(User author) {
+		int capacity = posts.length;
+		Post[] newPosts = new Post[capacity];
+		User[] newAuthors = new User[capacity];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		int authorNb = author.getPostNb();
+		while (n < capacity && (i < size || j < authorNb)) {
+			Post candidate = j < authorNb ? author.getPost(j) : null;
+			if (candidate != null && candidate.getTimestamp() <= cutoff) {
+				candidate = null;
+				j = authorNb;
+			}
+			if (candidate == null && i >= size) {
+				break;
+			}
+			if (candidate == null || (i < size && !getPost(i).isBefore(candidate))) {
+				newPosts[n] = getPost(i);
+				newAuthors[n] = getAuthor(i);
+				i++;
+			} else {
+				newPosts[n] = candidate;
+				newAuthors[n] = author;
+				j++;
+			}
+			n++;
+		}
+		// Les Post restants sont écartés: le plus récent d'entre eux fixe la coupure
+		if (i < size) {
+			drop(i);
+		}
+		if (j < authorNb) {
+			Post first = author.getPost(j);
+			cutoff = Math.max(cutoff, first.getTimestamp());
+		}
+		this.posts = newPosts;
+		this.authors = newAuthors;
+		this.head = 0;
+		this.size = n;
+		this.layoutNb++;
+	}
+
+	/**
+	 * Retire de ce Timeline tous les Post de l'auteur spécifié.
+	 *
+	 * @ensures (\forall int i; i >= 0 && i < size(); getAuthor(i) != author);
+	 */
+	synchronized void remove(User author) {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			int k = (head + i) % posts.length;
+			if (authors[k] != author) {
+				int dest = (head + n) % posts.length;
+				posts[dest] = posts[k];
+				authors[dest] = authors[k];
+				n++;
+			}
+		}
+		for (int i = n; i < size; i++) {
+			int k = (head + i) % posts.length;
+			posts[k] = null;
+			authors[k] = null;
+		}
+		size = n;
+		layoutNb++;
+	}
+
+	/**
+	 * Renvoie l'indice courant du ième Post de l'état marqué, ou -1.
+	 */
+	private int locate(int i, long pushMark, long layoutMark) {
+		if (layoutNb != layoutMark) {
+			return -1;
+		}
+		long k = i + (pushNb - pushMark);
+		return k < size ? (int) k : -1;
+	}
+
+	/**
+	 * Met à jour la coupure lorsque le ième Post (et les suivants, plus anciens)
+	 * est écarté.
+	 */
+	private void drop(int i) {
+		cutoff = Math.max(cutoff, getPost(i).getTimestamp());
+		int k = (head + i) % posts.length;
+		posts[k] = null;
+		authors[k] = null;
+	}
+}
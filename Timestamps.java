@@ -0,0 +1,123 @@
+package sociald1;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Horodatage des Post et des User du réseau social Microdon.
+ *
+ * Un horodatage est un entier long: le nombre de nanosecondes écoulées depuis
+ * le 1er janvier 1970 UTC, ce qui couvre les années 1677 à 2262. Les Post et
+ * les User mémorisent leur date sous cette forme plutôt que par un Instant: la
+ * date ne coûte aucun objet et deux dates se comparent par une simple
+ * comparaison d'entiers, notamment lors des fusions de fils d'actualité.
+ *
+ * now() est une horloge hybride: elle renvoie l'heure de la TimeSource
+ * installée, sauf si celle-ci n'est pas postérieure au dernier horodatage
+ * attribué, auquel cas elle renvoie ce dernier horodatage plus une
+ * nanoseconde. Les horodatages attribués sont ainsi strictement croissants,
+ * même pour deux Post créés dans le même battement d'horloge ou si l'heure
+ * recule: deux Post d'un même auteur, et plus généralement deux Post
+ * quelconques créés par now(), ont des dates distinctes.
+ *
+ * La TimeSource par défaut lit l'horloge du système à chaque Post ou User
+ * créé. setSource(TimeSource) permet de la remplacer, par exemple par une
+ * CoarseClock, qui évite cette lecture, ou par une SimulatedClock, qui rend
+ * les dates déterminées par le programme. Les Post historiques peuvent aussi
+ * être importés à leur date d'origine, passée, par User.addPost(String,
+ * Instant).
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class Timestamps {
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+	private static final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+	private static volatile TimeSource source = TimeSource.SYSTEM;
+
+	private Timestamps() {
+	}
+
+	/**
+	 * Renvoie la source de l'heure courante des horodatages.
+	 *
+	 * @return la TimeSource installée
+	 *
+	 * @ensures \result != null;
+	 *
+	 * @pure
+	 */
+	public static TimeSource getSource() {
+		return source;
+	}
+
+	/**
+	 * Remplace la source de l'heure courante des horodatages. Les horodatages
+	 * attribués ensuite restent postérieurs à tous ceux déjà attribués, même si
+	 * la nouvelle source retarde sur l'ancienne.
+	 *
+	 * @param newSource la nouvelle source
+	 *
+	 * @requires newSource != null;
+	 * @ensures getSource() == newSource;
+	 */
+	public static void setSource(TimeSource newSource) {
+		source = newSource;
+	}
+
+	/**
+	 * Renvoie un nouvel horodatage, strictement postérieur à tous ceux
+	 * précédemment renvoyés ou signalés par observe(long).
+	 *
+	 * @ensures \result > \old(dernier horodatage attribué);
+	 */
+	static long now() {
+		long current = source.epochNanos();
+		return last.updateAndGet(t -> current > t ? current : t + 1);
+	}
+
+	/**
+	 * Signale un horodatage attribué sans now(), par exemple lors de la relecture
+	 * d'un Journal ou d'un Snapshot: les horodatages renvoyés ensuite par now() lui
+	 * sont postérieurs. Un horodatage futur les avancerait tous jusqu'à lui: les
+	 * appelants n'en signalent que de passés (voir User.addPost(String, Instant)).
+	 *
+	 * @ensures now() > timestamp;
+	 */
+	static void observe(long timestamp) {
+		last.accumulateAndGet(timestamp, Math::max);
+	}
+
+	/**
+	 * Renvoie l'horodatage de la date spécifiée, borné à Long.MIN_VALUE ou
+	 * Long.MAX_VALUE si elle est hors de l'intervalle représentable.
+	 *
+	 * @requires date != null;
+	 *
+	 * @pure
+	 */
+	static long of(Instant date) {
+		long seconds = date.getEpochSecond();
+		if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+			return seconds > Long.MAX_VALUE / NANOS_PER_SECOND || date.getNano() > Long.MAX_VALUE % NANOS_PER_SECOND
+					? Long.MAX_VALUE
+					: seconds * NANOS_PER_SECOND + date.getNano();
+		}
+		if (seconds < Long.MIN_VALUE / NANOS_PER_SECOND) {
+			return Long.MIN_VALUE;
+		}
+		return seconds * NANOS_PER_SECOND + date.getNano();
+	}
+
+	/**
+	 * Renvoie la date de l'horodatage spécifié.
+	 *
+	 * @ensures \result != null && of(\result) == timestamp;
+	 *
+	 * @pure
+	 */
+	static Instant toInstant(long timestamp) {
+		return Instant.ofEpochSecond(Math.floorDiv(timestamp, NANOS_PER_SECOND),
+				Math.floorMod(timestamp, NANOS_PER_SECOND));
+	}
+}
@@ -2,7 +2,11 @@ package sociald1;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Mamadou NDIAYE 12109680
@@ -11,11 +15,15 @@ import java.util.HashSet;
  *
  * <p>Un User est caractérisé par:
  * <ul>
+ * <li>son identifiant entier, attribué à sa création par le UserRegistry</li>
  * <li>son nom et son mot de passe</li>
  * <li>sa date d'inscription sur Microdon (= date de création de l'instance de
  * l'User)</li>
  * <li>l'ensemble des utilisateurs auxquels il est abonné et dont les Post sont
- * intégrés à son fil d'actualité</li>
+ * intégrés à son fil d'actualité, mémorisé sous forme d'un IdBitmap de leurs
+ * identifiants</li>
+ * <li>l'ensemble des utilisateurs abonnés à lui (index inverse des abonnements,
+ * tenu à jour par addSubscription() et removeSubscription())</li>
  * <li>la liste de ses Post ordonnés du plus récent au plus ancien</li>
  * </ul></p>
  *
@@ -36,11 +44,42 @@ import java.util.HashSet;
  * }
  * }</pre>
  *
+ * Les Post sont conservés dans l'ordre de leur création, chaque nouveau Post
+ * étant ajouté en fin de journal en O(1) (voir PostLog); l'indexation du plus
+ * récent au plus ancien offerte par getPost(int) et l'itération s'en déduisent.
+ * Le curseur d'itération est mémorisé par des positions physiques dans ce
+ * journal, que l'ajout d'un Post ne modifie pas.
+ *
+ * Ce curseur est unique pour chaque User: deux itérations sur les Post d'un
+ * même User (par exemple deux NewsFeed de User abonnés à lui) se déplacent
+ * mutuellement. La méthode cursor() renvoie au contraire un PostCursor portant
+ * sa propre position, indépendant de ce curseur et des autres PostCursor.
+ *
+ * Les méthodes de lecture des Post (getPostNb(), getPost(int), getPosts())
+ * peuvent être appelées par plusieurs threads pendant qu'un autre poste, sans
+ * verrou externe: elles ne bloquent jamais et ne sont jamais bloquées par
+ * addPost(String), et chacune travaille sur un instantané cohérent de la liste
+ * des Post (voir PostLog). Les méthodes d'itération, qui partagent le curseur de
+ * ce User, restent réservées à un seul thread à la fois; chaque thread peut en
+ * revanche parcourir ces Post avec son propre PostCursor. Les appels à
+ * addPost(String) d'un même User sont sérialisés.
+ *
+ * Un User peut matérialiser son fil d'actualité (mode "push", voir
+ * enableTimeline(int)): chaque nouveau Post de l'un de ses abonnements est
+ * alors inséré au moment de sa création dans une mémoire tampon bornée et déjà
+ * triée, que NewsFeed parcourt séquentiellement sans fusion. Les auteurs
+ * suivis par un trop grand nombre de fils matérialisés ne sont pas diffusés à
+ * l'écriture mais fusionnés à la lecture (voir FanOutPolicy).
+ *
+ * @invariant getId() >= 0 && UserRegistry.get(getId()) == this;
  * @invariant getName() != null && !getName().isBlank();
  * @invariant getPassword() != null && !getPassword().isBlank();
  * @invariant getRegistrationDate() != null;
  * @invariant getSubscriptions() != null && !getSubscriptions().contains(null);
  * @invariant getSubscriptionNb() == getSubscriptions().size();
+ * @invariant (\forall User u; getSubscriptions().contains(u);
+ *            u.getFollowers().contains(this));
+ * @invariant getFollowerNb() == getFollowers().size();
  * @invariant getPosts() != null && !getPosts().contains(null);
  * @invariant (\forall int i, j; i >= 0 && i < j && j < getPostNb();
  *            getPost(i).isAfter(getPost(j)));
@@ -57,13 +96,31 @@ import java.util.HashSet;
  *
  */
 public class User {
+	/**
+	 * Capacité par défaut du fil d'actualité matérialisé d'un User.
+	 */
+	public static final int DEFAULT_TIMELINE_CAPACITY = 800;
+
 	// À compléter
+	private final int id;
 	private String userName;
     private String password;
-    private Instant registrationDate;
-    private HashSet<User> subscriptions;
-    private ArrayList<Post> posts;
-    private int currentIndex;
+    // Horodatage d'inscription (voir Timestamps)
+    private long registrationDate;
+    private IdBitmap subscriptions;
+    private volatile Set<User> subscriptionsView;
+    private HashSet<User> followers;
+    // Nombre de Post du fil d'actualité: ceux de ce User et de ses abonnements
+    private final AtomicInteger feedPostNb;
+    // Majorant du nombre de "likes" de chacun des Post de ce User
+    private final AtomicInteger maxPostLikeNb;
+    private PostLog posts;
+    private final UserCursor iteration;
+    // Nombre de Post dont la diffusion dans les fils matérialisés est achevée
+    private volatile int publishedNb;
+    private volatile Timeline timeline;
+    private HashSet<User> timelineFollowers;
+    private volatile boolean mergedOnRead;
 
 	/**
 	 * Initialise une nouvelle instance ayant les nom et mot de passe spécifiés. La
@@ -75,6 +132,7 @@ public class User {
 	 *
 	 * @requires userName != null && !userName.isBlank();
 	 * @requires password != null && !password.isBlank();
+	 * @ensures getId() == \old(UserRegistry.size());
 	 * @ensures getName().equals(userName);
 	 * @ensures getPassword().equals(password);
 	 * @ensures getRegistrationDate() != null;
@@ -91,12 +149,49 @@ public class User {
 	 */
 	public User(String userName, String password) {
 		// À compléter
+		this(userName, password, Timestamps.now());
+	}
+
+	/**
+	 * Initialise une nouvelle instance ayant les nom, mot de passe et horodatage
+	 * d'inscription spécifiés (voir Timestamps). Permet de recréer un User à sa
+	 * date d'inscription d'origine (voir Snapshot).
+	 *
+	 * @requires userName != null && !userName.isBlank();
+	 * @requires password != null && !password.isBlank();
+	 * @ensures getId() == \old(UserRegistry.size());
+	 * @ensures getRegistrationDate().equals(Timestamps.toInstant(registrationDate));
+	 */
+	User(String userName, String password, long registrationDate) {
+		// Identifiant réservé et journalisé d'abord: this n'est publié qu'une fois
+		// construit
+		this.id = UserRegistry.nextId(userName, password, registrationDate);
 		this.userName = userName;
         this.password = password;
-        this.registrationDate = Instant.now();
-        this.subscriptions = new HashSet<>();
-        this.posts = new ArrayList<>();
-        this.currentIndex = -1;
+        this.registrationDate = registrationDate;
+        this.subscriptions = new IdBitmap();
+        this.followers = new HashSet<>();
+        this.feedPostNb = new AtomicInteger();
+        this.maxPostLikeNb = new AtomicInteger();
+        this.posts = new PostLog();
+        this.iteration = new UserCursor(this, this.posts);
+        this.publishedNb = 0;
+        this.timeline = null;
+        this.timelineFollowers = new HashSet<>();
+        this.mergedOnRead = false;
+        UserRegistry.register(this);
+	}
+
+	/**
+	 * Renvoie l'identifiant de cet utilisateur, attribué par le UserRegistry à sa
+	 * création.
+	 *
+	 * @return l'identifiant de cet utilisateur
+	 *
+	 * @pure
+	 */
+	public int getId() {
+		return this.id;
 	}
 
 	/**
@@ -132,7 +227,7 @@ public class User {
 	 */
 	public Instant getRegistrationDate() {
 		// À compléter
-		return this.registrationDate;
+		return Timestamps.toInstant(this.registrationDate);
 	}
 
 	/**
@@ -150,7 +245,48 @@ public class User {
 	 */
 	public HashSet<User> getSubscriptions() {
 		// À compléter
-		return new HashSet<>(this.subscriptions);
+		HashSet<User> result = new HashSet<>();
+		this.subscriptions.forEach(id -> result.add(UserRegistry.get(id)));
+		return result;
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de l'ensemble des utilisateurs auxquels cet
+	 * utilisateur s'est abonné. Contrairement à getSubscriptions(), cette méthode
+	 * ne copie rien et coûte O(1): la vue lit directement les identifiants des
+	 * abonnements et reflète les abonnements et désabonnements ultérieurs. Elle
+	 * est parcourue par identifiant croissant.
+	 *
+	 * @return une vue de l'ensemble des abonnements de cet utilisateur
+	 *
+	 * @ensures \result != null;
+	 * @ensures \result.equals(getSubscriptions());
+	 *
+	 * @pure
+	 */
+	public Set<User> getSubscriptionsView() {
+		// Allouée au premier appel, la plupart des User n'en demandant jamais
+		Set<User> view = this.subscriptionsView;
+		if (view == null) {
+			view = new UserIdSet() {
+				@Override
+				int nextId(int from) {
+					return subscriptions.nextValue(from);
+				}
+
+				@Override
+				boolean containsId(int id) {
+					return subscriptions.contains(id);
+				}
+
+				@Override
+				public int size() {
+					return subscriptions.cardinality();
+				}
+			};
+			this.subscriptionsView = view;
+		}
+		return view;
 	}
 
 	/**
@@ -172,12 +308,31 @@ public class User {
 	 * @ensures !\result <==> (getSubscriptionNb() == \old(getSubscriptionNb()));
 	 * @ensures !\result <==> (getSubscriptions().equals(\old(getSubscriptions()));
 	 * @ensures getSubscriptions().containsAll(oldSubs);
+	 * @ensures u.hasFollower(this);
 	 *
 	 */
 	public boolean addSubscription(User u) {
 		// À compléter
 		if (u != null && !this.equals(u)) {
-            return this.subscriptions.add(u);
+            boolean added = this.subscriptions.add(u.getId());
+            if (added) {
+                Journal.subscriptionChanged(this, u, true);
+                // Sous le verrou de u: aucun Post de u n'est compté deux fois ni oublié,
+                // ni diffusé dans le fil matérialisé pendant sa fusion
+                synchronized (u) {
+                    u.followers.add(this);
+                    this.feedPostNb.addAndGet(u.getPostNb());
+                    Timeline t = this.timeline;
+                    if (t != null) {
+                        u.timelineFollowers.add(this);
+                        u.updateFanOut();
+                        if (!u.mergedOnRead) {
+                            t.merge(u);
+                        }
+                    }
+                }
+            }
+            return added;
         }
         return false;
 	}
@@ -198,10 +353,26 @@ public class User {
 	 * @ensures \result <==> (getSubscriptionNb() == \old(getSubscriptionNb() - 1));
 	 * @ensures !\result <==> (getSubscriptionNb() == \old(getSubscriptionNb()));
 	 * @ensures !\result <==> (getSubscriptions().equals(\old(getSubscriptions()));
+	 * @ensures u != null ==> !u.hasFollower(this);
 	 */
 	public boolean removeSubscription(User u) {
 		// À compléter
-		return this.subscriptions.remove(u);
+		boolean removed = u != null && this.subscriptions.remove(u.getId());
+		if (removed) {
+			Journal.subscriptionChanged(this, u, false);
+			synchronized (u) {
+				u.followers.remove(this);
+				this.feedPostNb.addAndGet(-u.getPostNb());
+				Timeline t = this.timeline;
+				if (u.timelineFollowers.remove(this)) {
+					if (t != null) {
+						t.remove(u);
+					}
+					u.updateFanOut();
+				}
+			}
+		}
+		return removed;
 	}
 
 	/**
@@ -220,7 +391,7 @@ public class User {
 	 */
 	public boolean hasSubscriptionTo(User u) {
 		// À compléter
-		return this.subscriptions.contains(u);
+		return u != null && this.subscriptions.contains(u.getId());
 	}
 
 	/**
@@ -234,7 +405,77 @@ public class User {
 	 */
 	public int getSubscriptionNb() {
 		// À compléter
-		return this.subscriptions.size();
+		return this.subscriptions.cardinality();
+	}
+
+	/**
+	 * Renvoie l'ensemble des identifiants des abonnements de cet utilisateur. Cet
+	 * ensemble ne doit pas être modifié.
+	 */
+	IdBitmap getSubscriptionIds() {
+		return this.subscriptions;
+	}
+
+	/**
+	 * Renvoie le nombre de Post du fil d'actualité de cet utilisateur: ses propres
+	 * Post et ceux de ses abonnements. Ce nombre est tenu à jour par
+	 * addPost(String), addSubscription(User) et removeSubscription(User), et se lit
+	 * en O(1).
+	 *
+	 * @ensures \result == getPostNb() + (\sum User u;
+	 *          getSubscriptions().contains(u); u.getPostNb());
+	 *
+	 * @pure
+	 */
+	int getFeedPostNb() {
+		return this.feedPostNb.get();
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de l'ensemble des utilisateurs abonnés à cet
+	 * utilisateur. Cette vue n'est pas une copie: elle reflète les abonnements et
+	 * désabonnements ultérieurs.
+	 *
+	 * @return l'ensemble des utilisateurs abonnés à cet utilisateur
+	 *
+	 * @ensures \result != null;
+	 * @ensures (\forall User u; \result.contains(u); u.hasSubscriptionTo(this));
+	 * @ensures \result.size() == getFollowerNb();
+	 *
+	 * @pure
+	 */
+	public Set<User> getFollowers() {
+		return Collections.unmodifiableSet(this.followers);
+	}
+
+	/**
+	 * Renvoie true si l'utilisateur spécifié est abonné à cet utilisateur.
+	 *
+	 * @param u l'utilisateur dont on cherche à savoir s'il est abonné à cet
+	 *          utilisateur
+	 *
+	 * @return true si l'utilisateur spécifié est abonné à cet utilisateur; false
+	 *         sinon
+	 *
+	 * @ensures \result <==> u != null && u.hasSubscriptionTo(this);
+	 *
+	 * @pure
+	 */
+	public boolean hasFollower(User u) {
+		return this.followers.contains(u);
+	}
+
+	/**
+	 * Renvoie le nombre d'utilisateurs abonnés à cet utilisateur.
+	 *
+	 * @return le nombre d'utilisateurs abonnés à cet utilisateur
+	 *
+	 * @ensures \result == getFollowers().size();
+	 *
+	 * @pure
+	 */
+	public int getFollowerNb() {
+		return this.followers.size();
 	}
 
 	/**
@@ -251,7 +492,29 @@ public class User {
 	 */
 	public ArrayList<Post> getPosts() {
 		// À compléter
-		return new ArrayList<>(this.posts);
+		int n = this.posts.size();
+		ArrayList<Post> result = new ArrayList<>(n);
+		for (int i = n - 1; i >= 0; i--) {
+			result.add(this.posts.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de la liste des Post de cet utilisateur, du
+	 * plus récent au plus ancien. Contrairement à getPosts(), cette méthode ne
+	 * copie aucun Post et coûte O(1): la vue est un instantané de la liste au
+	 * moment de l'appel, que les Post ajoutés ensuite ne modifient pas.
+	 *
+	 * @return une vue de la liste des Post de cet utilisateur
+	 *
+	 * @ensures \result != null;
+	 * @ensures \result.equals(getPosts());
+	 *
+	 * @pure
+	 */
+	public List<Post> getPostsView() {
+		return new PostRange(this.posts, 0, this.posts.size());
 	}
 
 	/**
@@ -278,13 +541,107 @@ public class User {
 	 * @ensures \old(lastIndex() == -1) ==> lastIndex() == \old(lastIndex());
 	 *
 	 */
-	public Post addPost(String msg) {
+	public synchronized Post addPost(String msg) {
 		// À compléter
-		Post newPost = new Post(msg);
-        this.posts.add(0, newPost);
+		return publish(msg, Timestamps.now());
+	}
+
+	/**
+	 * Crée et renvoie une nouvelle instance de Post de texte et de date spécifiés
+	 * et l'ajoute à la liste des posts de cet utilisateur, comme addPost(String).
+	 * Permet d'importer des Post historiques à leur date d'origine; les Post créés
+	 * ensuite par addPost(String) leur restent postérieurs. Une date future est
+	 * refusée: elle avancerait les dates de tous les Post créés ensuite. La
+	 * TimeSource installée est lue une fois (voir Timestamps.getSource()).
+	 *
+	 * @param msg  texte du nouveau post de cet utilisateur
+	 * @param date date du nouveau post
+	 *
+	 * @return le nouveau Post de cet utilisateur
+	 *
+	 * @throws IllegalArgumentException si date n'est pas postérieure à la date du
+	 *                                  dernier Post de cet utilisateur ou si elle
+	 *                                  est postérieure à l'heure de la TimeSource
+	 *                                  installée
+	 *
+	 * @requires msg != null && date != null;
+	 * @requires getPostNb() == 0 || date.isAfter(getPost(0).getDate());
+	 * @requires date n'est pas postérieure à l'heure de Timestamps.getSource();
+	 * @ensures getPost(0).equals(\result);
+	 * @ensures \result.getText().equals(msg);
+	 * @ensures \result.getDate().equals(date);
+	 * @ensures getPostNb() == \old(getPostNb()) + 1;
+	 */
+	public synchronized Post addPost(String msg, Instant date) {
+		long timestamp = Timestamps.of(date);
+		int n = this.posts.size();
+		if (n > 0 && timestamp <= this.posts.get(n - 1).getTimestamp()) {
+			throw new IllegalArgumentException(
+					"Date " + date + " antérieure au dernier Post: " + this.posts.get(n - 1).getDate());
+		}
+		long current = Timestamps.getSource().epochNanos();
+		if (timestamp > current) {
+			throw new IllegalArgumentException("Date " + date + " future: il est " + Timestamps.toInstant(current));
+		}
+		Timestamps.observe(timestamp);
+		return publish(msg, timestamp);
+	}
+
+	/**
+	 * Crée le Post de texte et d'horodatage spécifiés (voir Timestamps) et le
+	 * publie comme
+	 * addPost(String): il est journalisé (voir Journal), ajouté à la liste des
+	 * Post de cet utilisateur, indexé et diffusé aux fils d'actualité de ses
+	 * abonnés. Permet de recréer un Post à sa date d'origine.
+	 *
+	 * @requires msg != null;
+	 * @requires getPostNb() == 0 || date > getPost(0).getTimestamp();
+	 * @ensures getPostNb() == \old(getPostNb()) + 1;
+	 * @ensures getPost(0) == \result && \result.getTimestamp() == date;
+	 */
+	synchronized Post publish(String msg, long date) {
+		Post newPost = new Post(msg, date, this, this.posts.size());
+		Journal.postAdded(this, newPost);
+        // Le curseur, mémorisé en positions physiques, reste sur les mêmes Post
+        this.posts.append(newPost);
+        PostIndex.add(newPost, this);
+        this.feedPostNb.incrementAndGet();
+        for (User follower : this.followers) {
+            follower.feedPostNb.incrementAndGet();
+        }
+        if (this.timeline != null) {
+            this.timeline.push(newPost, this);
+        }
+        updateFanOut();
+        if (this.mergedOnRead) {
+            FanOutPolicy.postPulled();
+        } else {
+            for (User follower : this.timelineFollowers) {
+                follower.timeline.push(newPost, this);
+            }
+            FanOutPolicy.postPushed(this.timelineFollowers.size());
+        }
+        this.publishedNb = this.posts.size();
         return newPost;
 	}
 
+	/**
+	 * Ajoute le Post spécifié, recréé par Snapshot, à la liste des Post de cet
+	 * utilisateur sans le journaliser, l'indexer ni le diffuser: les abonnés sont
+	 * rattachés ensuite par addSubscription(User), qui compte alors ce Post dans
+	 * leur fil d'actualité.
+	 *
+	 * @requires p != null && p.getAuthor() == this;
+	 * @requires p.getPosition() == getPostNb();
+	 * @requires getFollowerNb() == 0;
+	 * @ensures getPostNb() == \old(getPostNb()) + 1;
+	 */
+	synchronized void restorePost(Post p) {
+		this.posts.append(p);
+		this.feedPostNb.incrementAndGet();
+		this.publishedNb = this.posts.size();
+	}
+
 	/**
 	 * Renvoie le nombre de Post de cet utilisateur.
 	 *
@@ -313,12 +670,98 @@ public class User {
 	 */
 	public Post getPost(int i) {
 		// À compléter
-		if (i >= 0 && i < getPostNb()) {
-            return this.posts.get(i);
+		// Une seule lecture de la taille: l'indice est résolu dans un même instantané
+		int n = this.posts.size();
+		if (i >= 0 && i < n) {
+            return this.posts.get(n - 1 - i);
         }
         return null;
 	}
 
+	/**
+	 * Renvoie un majorant du nombre de "likes" de chacun des Post de ce User: le
+	 * plus grand nombre de "likes" signalé par ses Post (voir postLiked(int)). Les
+	 * "likes" ne pouvant être retirés, ce majorant ne décroît jamais.
+	 *
+	 * @ensures (\forall Post p; getPosts().contains(p);
+	 *          p.getLikeNumber() <= \result);
+	 *
+	 * @pure
+	 */
+	int getMaxPostLikeNb() {
+		return this.maxPostLikeNb.get();
+	}
+
+	/**
+	 * Signale qu'un Post de ce User a désormais likeNb "likes".
+	 *
+	 * @ensures getMaxPostLikeNb() >= likeNb;
+	 */
+	void postLiked(int likeNb) {
+		if (likeNb > this.maxPostLikeNb.get()) {
+			this.maxPostLikeNb.accumulateAndGet(likeNb, Math::max);
+		}
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de la liste des Post de ce User dont la date
+	 * est comprise entre from (inclus) et to (exclu), triée du plus récent au plus
+	 * ancien. Les Post étant rangés par date, les bornes de cette liste sont
+	 * trouvées par recherche dichotomique en O(log n), et la vue est construite
+	 * en O(1) sans copier aucun Post. Elle ne reflète pas les Post ajoutés
+	 * ensuite.
+	 *
+	 * @param from la date du plus ancien Post possible (incluse)
+	 * @param to   la date au-delà de laquelle les Post sont exclus
+	 *
+	 * @return la liste des Post de ce User dont la date est dans [from, to[
+	 *
+	 * @requires from != null && to != null;
+	 * @ensures \result != null;
+	 * @ensures (\forall Post p; \result.contains(p); getPosts().contains(p) &&
+	 *          !p.getDate().isBefore(from) && p.getDate().isBefore(to));
+	 * @ensures (\forall Post p; getPosts().contains(p) &&
+	 *          !p.getDate().isBefore(from) && p.getDate().isBefore(to);
+	 *          \result.contains(p));
+	 * @ensures (\forall int i, j; i >= 0 && i < j && j < \result.size();
+	 *          \result.get(i).isAfter(\result.get(j)));
+	 *
+	 * @pure
+	 */
+	public List<Post> postsBetween(Instant from, Instant to) {
+		int n = this.posts.size();
+		int hi = this.posts.rank(Timestamps.of(to), false, n);
+		int lo = Math.min(this.posts.rank(Timestamps.of(from), false, n), hi);
+		return new PostRange(this.posts, lo, hi);
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de la liste des Post de ce User dont la date
+	 * n'est pas antérieure à la date spécifiée, triée du plus récent au plus
+	 * ancien. Comme postsBetween(Instant, Instant), cette méthode coûte O(log n)
+	 * et ne copie aucun Post.
+	 *
+	 * @param since la date du plus ancien Post possible (incluse)
+	 *
+	 * @return la liste des Post de ce User dont la date est postérieure ou égale à
+	 *         since
+	 *
+	 * @requires since != null;
+	 * @ensures \result != null;
+	 * @ensures (\forall Post p; \result.contains(p); getPosts().contains(p) &&
+	 *          !p.getDate().isBefore(since));
+	 * @ensures (\forall Post p; getPosts().contains(p) &&
+	 *          !p.getDate().isBefore(since); \result.contains(p));
+	 * @ensures (\forall int i, j; i >= 0 && i < j && j < \result.size();
+	 *          \result.get(i).isAfter(\result.get(j)));
+	 *
+	 * @pure
+	 */
+	public List<Post> postsSince(Instant since) {
+		int n = this.posts.size();
+		return new PostRange(this.posts, this.posts.rank(Timestamps.of(since), false, n), n);
+	}
+
 	/**
 	 * Initialise ce User pour le démarrage d'une nouvelle itération sur les Post de
 	 * ce User. Cette itération s'effectue à partir du Post le plus récent, de sorte
@@ -331,7 +774,7 @@ public class User {
 	 */
 	public void startIteration() {
 		// À compléter
-		currentIndex = -1;
+		iteration.reset();
 	}
 
 	/**
@@ -346,7 +789,7 @@ public class User {
 	 */
 	public boolean hasNext() {
 		// À compléter
-		return currentIndex < posts.size() - 1;
+		return iteration.hasNext();
 	}
 
 	/**
@@ -367,8 +810,7 @@ public class User {
 	public Post next() {
 		// À compléter
 		if (hasNext()) {
-            currentIndex++;
-            return posts.get(currentIndex);
+            return iteration.next();
         }
         return null;
 	}
@@ -387,7 +829,7 @@ public class User {
 	 */
 	public int nextIndex() {
 		// À compléter
-		return hasNext() ? currentIndex + 1 : getPostNb();
+		return iteration.nextIndex();
 	}
 
 	/**
@@ -403,7 +845,7 @@ public class User {
 	 */
 	public boolean hasPrevious() {
 		// À compléter
-		return currentIndex > 0;
+		return iteration.hasPrevious();
 	}
 
 	/**
@@ -424,8 +866,7 @@ public class User {
 	public Post previous() {
 		// À compléter
 		if (hasPrevious()) {
-            currentIndex--;
-            return posts.get(currentIndex);
+            return iteration.previous();
         }
         return null;
 	}
@@ -444,7 +885,7 @@ public class User {
 	 */
 	public int previousIndex() {
 		// À compléter
-		return hasPrevious() ? currentIndex - 1 : -1;
+		return iteration.previousIndex();
 	}
 
 	/**
@@ -460,6 +901,175 @@ public class User {
 	 */
 	public int lastIndex() {
 		// À compléter
-		return currentIndex;
+		return iteration.lastIndex();
+	}
+
+	/**
+	 * Renvoie un nouveau curseur sur les Post de ce User, placé avant le Post le
+	 * plus récent. Ce curseur porte sa propre position: il est indépendant des
+	 * méthodes d'itération de ce User et des autres curseurs. Il parcourt les Post
+	 * existant à sa création, sans les copier: les Post ajoutés ensuite sont
+	 * ignorés et ne décalent pas ses index.
+	 *
+	 * @return un nouveau curseur sur les Post de ce User
+	 *
+	 * @ensures \result != null;
+	 * @ensures \result.nextIndex() == 0;
+	 * @ensures \result.lastIndex() == -1;
+	 * @ensures \result.hasNext() <==> getPostNb() > 0;
+	 *
+	 * @pure
+	 */
+	public PostCursor cursor() {
+		return new UserCursor(this, this.posts, this.posts.size());
+	}
+
+	/**
+	 * Renvoie le curseur utilisé par les méthodes d'itération de ce User.
+	 */
+	UserCursor iteration() {
+		return this.iteration;
+	}
+
+	/**
+	 * Renvoie le journal des Post de ce User. Ce journal ne doit pas être modifié.
+	 */
+	PostLog getPostLog() {
+		return this.posts;
+	}
+
+	/**
+	 * Renvoie le nombre de Post de ce User dont la diffusion dans les fils
+	 * matérialisés de ses abonnés est achevée. Ces Post sont les plus anciens:
+	 * seuls les derniers Post ajoutés peuvent être en cours de diffusion.
+	 *
+	 * @ensures \result >= 0 && \result <= getPostNb();
+	 */
+	int getPublishedNb() {
+		return this.publishedNb;
+	}
+
+	/**
+	 * Active le mode "push" pour le fil d'actualité de ce User: les Post les plus
+	 * récents de ce User et de ses abonnements sont fusionnés une fois pour toutes
+	 * dans une mémoire tampon d'au plus capacity Post, tenue à jour par addPost(),
+	 * addSubscription() et removeSubscription(). Si le mode "push" était déjà
+	 * actif, la mémoire tampon est reconstruite avec la nouvelle capacité.
+	 *
+	 * @param capacity nombre maximal de Post conservés dans le fil matérialisé
+	 *
+	 * @requires capacity > 0;
+	 * @ensures hasTimeline();
+	 */
+	public void enableTimeline(int capacity) {
+		Timeline t = new Timeline(capacity);
+		synchronized (this) {
+			t.merge(this);
+			this.timeline = t;
+		}
+		this.subscriptions.forEach(id -> {
+			User u = UserRegistry.get(id);
+			// Sous le verrou de u, comme publish(String, long), qui parcourt ses abonnés
+			synchronized (u) {
+				u.timelineFollowers.add(this);
+				u.updateFanOut();
+				if (!u.mergedOnRead) {
+					t.merge(u);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Désactive le mode "push" pour le fil d'actualité de ce User. Le NewsFeed de
+	 * ce User est alors entièrement fusionné au moment de la lecture.
+	 *
+	 * @ensures !hasTimeline();
+	 */
+	public void disableTimeline() {
+		// Retiré des abonnés avant d'être supprimé: publish(String, long) ne trouve
+		// jamais un abonné sans fil matérialisé
+		this.subscriptions.forEach(id -> {
+			User u = UserRegistry.get(id);
+			synchronized (u) {
+				u.timelineFollowers.remove(this);
+				u.updateFanOut();
+			}
+		});
+		this.timeline = null;
+	}
+
+	/**
+	 * Renvoie true si le fil d'actualité de ce User est matérialisé (mode "push").
+	 *
+	 * @return true si le fil d'actualité de ce User est matérialisé
+	 *
+	 * @pure
+	 */
+	public boolean hasTimeline() {
+		return this.timeline != null;
+	}
+
+	/**
+	 * Renvoie le fil d'actualité matérialisé de ce User, ou null si le mode "push"
+	 * n'est pas actif.
+	 */
+	Timeline getTimeline() {
+		return this.timeline;
+	}
+
+	/**
+	 * Renvoie true si les Post de ce User ne sont pas diffusés à l'écriture dans
+	 * les fils matérialisés de ses abonnés mais fusionnés au moment de la lecture
+	 * (voir FanOutPolicy).
+	 *
+	 * @return true si ce User est fusionné à la lecture
+	 *
+	 * @pure
+	 */
+	public boolean isMergedOnRead() {
+		return this.mergedOnRead;
+	}
+
+	/**
+	 * Renvoie le nombre d'abonnés de ce User possédant un fil d'actualité
+	 * matérialisé.
+	 *
+	 * @return le nombre d'abonnés de ce User possédant un fil matérialisé
+	 *
+	 * @ensures \result >= 0;
+	 *
+	 * @pure
+	 */
+	public int getTimelineFollowerNb() {
+		return this.timelineFollowers.size();
+	}
+
+	/**
+	 * Applique la politique de diffusion courante à ce User. Lorsque la décision
+	 * change, les Post de ce User sont retirés des fils matérialisés de ses
+	 * abonnés (passage à la fusion à la lecture) ou y sont fusionnés (retour à la
+	 * diffusion à l'écriture). La décision est prise sous le verrou de ce User,
+	 * comme la diffusion de ses Post par addPost(String): un Post n'est jamais
+	 * inséré dans un fil matérialisé après que son auteur est passé à la fusion à
+	 * la lecture.
+	 *
+	 * @ensures isMergedOnRead() ==
+	 *          FanOutPolicy.mergeOnRead(getTimelineFollowerNb());
+	 */
+	synchronized void updateFanOut() {
+		boolean onRead = FanOutPolicy.mergeOnRead(this.timelineFollowers.size());
+		if (onRead == this.mergedOnRead) {
+			return;
+		}
+		this.mergedOnRead = onRead;
+		for (User follower : this.timelineFollowers) {
+			if (onRead) {
+				follower.timeline.remove(this);
+			} else {
+				follower.timeline.merge(this);
+			}
+		}
+		FanOutPolicy.authorSwitched(onRead);
 	}
 }
@@ -0,0 +1,44 @@
+package sociald1.bench;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sociald1.Post;
+import sociald1.User;
+
+/**
+ * Benchmarks des méthodes de User: création d'un Post et copie de l'ensemble des
+ * abonnements.
+ *
+ * Les Post créés par addPost restent dans le journal de leur auteur: la durée
+ * des itérations est réduite pour borner la mémoire retenue sur les grands
+ * graphes.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx8g" })
+public class UserBenchmark {
+
+	@Benchmark
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public Post addPost(SocialGraph graph) {
+		return graph.randomUser().addPost("Nouveau message");
+	}
+
+	@Benchmark
+	public HashSet<User> getSubscriptions(SocialGraph graph) {
+		return graph.randomUser().getSubscriptions();
+	}
+}
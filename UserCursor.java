@@ -0,0 +1,198 @@
+package sociald1;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Curseur sur les Post d'un User, du plus récent au plus ancien.
+ *
+ * La position est mémorisée par des indices physiques dans le journal des Post
+ * (voir PostLog), que l'ajout d'un Post ne modifie pas: un curseur reste sur
+ * les mêmes Post lorsque l'auteur poste.
+ *
+ * Un curseur peut suivre le journal ou en parcourir un instantané. En mode
+ * suivi, les index sont relatifs à la liste courante des Post: ils augmentent
+ * lorsque l'auteur poste et, tant que ni next() ni previous() n'ont été
+ * appelées, les nouveaux Post restent à parcourir. Un instantané est défini par
+ * le nombre de Post du journal à sa création (ou à sa remise au début): les
+ * Post ajoutés ensuite sont ignorés et les index ne changent pas. Un instantané
+ * peut aussi exclure les Post les plus anciens du journal, pour ne parcourir
+ * qu'une tranche de dates. Un instantané ne copie aucun Post.
+ *
+ * Chaque User possède un UserCursor utilisé par ses propres méthodes
+ * d'itération; User.cursor() en crée de nouveaux, indépendants de celui-ci.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+final class UserCursor implements PostCursor {
+	private final User user;
+	private final PostLog posts;
+	private final boolean snapshot;
+	// Tranche [base, limit[ des indices physiques parcourus en mode instantané
+	private int base;
+	private int limit;
+	// Nombre de Post plus anciens restant à parcourir, valide si lastPos >= 0
+	private int nextPos;
+	// Indice physique du dernier Post renvoyé par next() ou previous(), ou -1
+	private int lastPos;
+
+	/**
+	 * Initialise un curseur placé avant le Post le plus récent du journal
+	 * spécifié, qui suit ce journal.
+	 *
+	 * @requires user != null && posts != null;
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	UserCursor(User user, PostLog posts) {
+		this.user = user;
+		this.posts = posts;
+		this.snapshot = false;
+		reset();
+	}
+
+	/**
+	 * Initialise un curseur placé avant le Post le plus récent d'un instantané
+	 * formé des limit premiers Post du journal spécifié.
+	 *
+	 * @requires user != null && posts != null;
+	 * @requires limit >= 0 && limit <= posts.size();
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	UserCursor(User user, PostLog posts, int limit) {
+		this(user, posts, 0, limit);
+	}
+
+	/**
+	 * Initialise un curseur placé avant le Post le plus récent d'un instantané
+	 * formé des Post d'indices physiques base à limit - 1 du journal spécifié.
+	 *
+	 * @requires user != null && posts != null;
+	 * @requires base >= 0 && base <= limit && limit <= posts.size();
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	UserCursor(User user, PostLog posts, int base, int limit) {
+		this.user = user;
+		this.posts = posts;
+		this.snapshot = true;
+		this.nextPos = 0;
+		this.lastPos = -1;
+		this.base = base;
+		this.limit = limit;
+	}
+
+	/**
+	 * Replace ce curseur avant le Post le plus récent. Un instantané est étendu
+	 * à tous les Post du journal, y compris ceux ajoutés depuis sa création.
+	 *
+	 * @ensures nextIndex() == 0;
+	 * @ensures lastIndex() == -1;
+	 */
+	void reset() {
+		this.nextPos = 0;
+		this.lastPos = -1;
+		this.base = 0;
+		this.limit = posts.size();
+	}
+
+	/**
+	 * Place ce curseur à la même position physique que le curseur spécifié,
+	 * portant sur le même journal.
+	 *
+	 * @requires c != null;
+	 * @ensures lastUser() == c.lastUser();
+	 */
+	void follow(UserCursor c) {
+		this.nextPos = c.nextPos;
+		this.lastPos = c.lastPos;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return gap() > base;
+	}
+
+	@Override
+	public Post next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		nextPos = gap() - 1;
+		lastPos = nextPos;
+		return posts.get(lastPos);
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return gap() < end();
+	}
+
+	@Override
+	public Post previous() {
+		if (!hasPrevious()) {
+			throw new NoSuchElementException();
+		}
+		lastPos = gap();
+		nextPos = lastPos + 1;
+		return posts.get(lastPos);
+	}
+
+	@Override
+	public int nextIndex() {
+		return end() - gap();
+	}
+
+	@Override
+	public int previousIndex() {
+		return nextIndex() - 1;
+	}
+
+	@Override
+	public int lastIndex() {
+		return lastPos < 0 ? -1 : end() - 1 - lastPos;
+	}
+
+	@Override
+	public User lastUser() {
+		return lastPos < 0 ? null : user;
+	}
+
+	/**
+	 * Renvoie le Post qui sera renvoyé par le prochain appel à next().
+	 *
+	 * @requires hasNext();
+	 * @pure
+	 */
+	Post peekNext() {
+		return posts.get(gap() - 1);
+	}
+
+	/**
+	 * Renvoie le Post qui sera renvoyé par le prochain appel à previous().
+	 *
+	 * @requires hasPrevious();
+	 * @pure
+	 */
+	Post peekPrevious() {
+		return posts.get(gap());
+	}
+
+	/**
+	 * Renvoie le nombre de Post parcourus par ce curseur: le nombre courant de
+	 * Post du journal, ou celui de l'instantané.
+	 */
+	private int end() {
+		return snapshot ? limit : posts.size();
+	}
+
+	/**
+	 * Renvoie le nombre de Post plus anciens que la position courante de ce
+	 * curseur. Tant que ni next() ni previous() n'ont été appelées, cette position
+	 * est la tête de la liste parcourue.
+	 */
+	private int gap() {
+		return lastPos < 0 ? end() : nextPos;
+	}
+}
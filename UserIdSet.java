@@ -0,0 +1,64 @@
+package sociald1;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Vue non modifiable d'un ensemble de User mémorisé par leurs identifiants
+ * (voir UserRegistry et IdBitmap).
+ *
+ * La vue ne copie pas les identifiants: elle reflète les modifications
+ * ultérieures de l'ensemble sous-jacent. Ses itérateurs parcourent les User
+ * par identifiant croissant, en reprenant à chaque pas après le dernier
+ * identifiant renvoyé; ils ne lèvent donc jamais de
+ * ConcurrentModificationException et reflètent les modifications portant sur
+ * les identifiants qui restent à parcourir.
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+abstract class UserIdSet extends AbstractSet<User> {
+	/**
+	 * Renvoie le plus petit identifiant de l'ensemble supérieur ou égal à from, ou
+	 * -1 s'il n'en existe pas.
+	 */
+	abstract int nextId(int from);
+
+	/**
+	 * Renvoie true si l'identifiant spécifié appartient à l'ensemble.
+	 */
+	abstract boolean containsId(int id);
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof User && containsId(((User) o).getId());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nextId(0) < 0;
+	}
+
+	@Override
+	public Iterator<User> iterator() {
+		return new Iterator<User>() {
+			private int next = nextId(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public User next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				User u = UserRegistry.get(next);
+				next = nextId(next + 1);
+				return u;
+			}
+		};
+	}
+}
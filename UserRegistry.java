@@ -0,0 +1,135 @@
+package sociald1;
+
+import java.util.HashMap;
+
+/**
+ * Registre des utilisateurs du réseau social Microdon.
+ *
+ * Chaque User reçoit à sa création un identifiant entier dense: le premier
+ * User créé a l'identifiant 0, le suivant 1, etc. Les relations entre
+ * utilisateurs peuvent ainsi être mémorisées sous forme d'entiers primitifs
+ * (tableaux d'int, bitmaps) plutôt que d'ensembles de références, le registre
+ * permettant de retrouver un User à partir de son identifiant en O(1).
+ *
+ * Le registre permet aussi de retrouver un User par son nom. Plusieurs User
+ * pouvant porter le même nom, c'est alors le premier créé qui est renvoyé.
+ *
+ * Le registre conserve une référence vers chaque User créé.
+ *
+ * Un User réserve son identifiant au début de sa construction (nextId(String,
+ * String, long)) et ne s'enregistre qu'à la fin (register(User)): un User n'est
+ * jamais visible dans
+ * le registre avant d'être entièrement construit. Lorsque plusieurs User sont
+ * construits simultanément, size() ne compte que les User enregistrés dont
+ * tous les prédécesseurs le sont aussi.
+ *
+ * @invariant size() >= 0;
+ * @invariant (\forall int i; i >= 0 && i < size(); get(i) != null &&
+ *            get(i).getId() == i);
+ *
+ * @since 18/09/2023
+ * @version 18/09/2023
+ */
+public final class UserRegistry {
+	private static volatile User[] users = new User[64];
+	private static volatile int size = 0;
+	private static int reserved = 0;
+	private static final HashMap<String, User> byName = new HashMap<>();
+
+	private UserRegistry() {
+	}
+
+	/**
+	 * Renvoie le nombre de User enregistrés, c'est à dire le plus grand
+	 * identifiant attribué plus un, hors User en cours de construction.
+	 *
+	 * @return le nombre de User enregistrés
+	 *
+	 * @pure
+	 */
+	public static int size() {
+		return size;
+	}
+
+	/**
+	 * Renvoie le User ayant l'identifiant spécifié.
+	 *
+	 * @param id l'identifiant du User cherché
+	 *
+	 * @return le User ayant l'identifiant spécifié; null si aucun User n'a cet
+	 *         identifiant
+	 *
+	 * @ensures \result != null <==> id >= 0 && id < size();
+	 * @ensures \result != null ==> \result.getId() == id;
+	 *
+	 * @pure
+	 */
+	public static User get(int id) {
+		// size est lu avant users: le tableau lu contient alors au moins size User
+		int n = size;
+		if (id < 0 || id >= n) {
+			return null;
+		}
+		return users[id];
+	}
+
+	/**
+	 * Renvoie le premier User créé portant le nom spécifié.
+	 *
+	 * @param name le nom du User cherché
+	 *
+	 * @return le premier User créé portant le nom spécifié; null s'il n'en existe
+	 *         pas
+	 *
+	 * @ensures \result != null ==> \result.getName().equals(name);
+	 *
+	 * @pure
+	 */
+	public static synchronized User getByName(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * Réserve et renvoie l'identifiant du prochain User créé, qui doit ensuite
+	 * être enregistré par register(User), et journalise sa création. La
+	 * réservation et la journalisation forment une même section critique: les
+	 * User créés simultanément sont journalisés dans l'ordre de leurs
+	 * identifiants, celui dans lequel Journal les rejoue.
+	 *
+	 * @requires userName != null && password != null;
+	 * @ensures \result >= size();
+	 */
+	static synchronized int nextId(String userName, String password, long registrationDate) {
+		int id = reserved++;
+		Journal.userCreated(id, userName, password, registrationDate);
+		return id;
+	}
+
+	/**
+	 * Enregistre le User spécifié, entièrement construit, sous l'identifiant
+	 * qu'il a réservé par nextId(String, String, long).
+	 *
+	 * @requires u != null && u.getId() a été renvoyé par nextId(String, String,
+	 *           long);
+	 * @ensures get(u.getId()) == u || un User d'identifiant inférieur n'est pas
+	 *          encore enregistré;
+	 */
+	static synchronized void register(User u) {
+		int id = u.getId();
+		User[] current = users;
+		if (id >= current.length) {
+			User[] grown = new User[Math.max(current.length * 2, id + 1)];
+			System.arraycopy(current, 0, grown, 0, current.length);
+			current = grown;
+		}
+		current[id] = u;
+		// Tableau publié avant size: get(int) lit size en premier
+		users = current;
+		int n = size;
+		while (n < reserved && current[n] != null) {
+			n++;
+		}
+		size = n;
+		byName.merge(u.getName(), u, (first, other) -> first.getId() < other.getId() ? first : other);
+	}
+}